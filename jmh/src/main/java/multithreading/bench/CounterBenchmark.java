@@ -0,0 +1,47 @@
+package multithreading.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared-counter increment throughput and latency for every {@link Counters} variant; all
+ * benchmark threads increment the same counter.
+ *
+ * Usage: gradle :jmh:sweep -Pargs='CounterBenchmark [maxThreads=2 x cores]'  (1, 2, 4, ... N threads)
+ *        gradle :jmh:jmh -Pargs='CounterBenchmark -t 8 -p variant=LongAdder'
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class CounterBenchmark {
+
+    @Param({"synchronized", "AtomicInteger", "LongAdder", "ReentrantLock", "ReentrantLock(fair)", "StampedLock",
+            "striped", "lock-free accumulator"})
+    public String variant;
+
+    private Counters.Counter counter;
+
+    @Setup
+    public void setUp() {
+        counter = Counters.named(variant).factory.get();
+    }
+
+    @Benchmark
+    public void increment() {
+        counter.increment();
+    }
+}
@@ -0,0 +1,93 @@
+package multithreading.bench;
+
+import multithreading.ForkJoinCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scaling of a CPU-bound counting job: the ThreadPoolCounterDemo shape (fixed pool, every
+ * match bumps one shared AtomicInteger, CountDownLatch to collect) against ForkJoinCounter
+ * (local accumulation, tree reduction) at each parallelism. Both return the count, which JMH
+ * consumes.
+ *
+ * Usage: gradle :jmh:jmh -Pargs='ForkJoinCounterBenchmark -p parallelism=1,2,4,8 -p items=200000000'
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ForkJoinCounterBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param("20000000")
+    public long items;
+
+    private ForkJoinCounter counter;
+
+    // A few ns of real work per item; counts items whose mixed hash has the low bit set
+    static long work(long i) {
+        long x = i * 0x9E3779B97F4A7C15L;
+        x ^= x >>> 31;
+        x *= 0xBF58476D1CE4E5B9L;
+        return (x ^ (x >>> 29)) & 1;
+    }
+
+    @Setup
+    public void setUp() {
+        counter = new ForkJoinCounter(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        counter.close();
+    }
+
+    @Benchmark
+    public long forkJoin() {
+        return counter.sum(items, ForkJoinCounterBenchmark::work);
+    }
+
+    // Same shape as ThreadPoolCounterDemo: poolSize threads, 2 x poolSize tasks, one shared counter
+    @Benchmark
+    public long fixedPoolAtomic() throws InterruptedException {
+        int tasks = parallelism * 2;
+        AtomicInteger matches = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(tasks);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        long perTask = items / tasks;
+        for (int t = 0; t < tasks; t++) {
+            long from = t * perTask;
+            long to = t == tasks - 1 ? items : from + perTask;
+            executor.submit(() -> {
+                for (long i = from; i < to; i++) {
+                    if (work(i) != 0) matches.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return matches.get();
+    }
+}
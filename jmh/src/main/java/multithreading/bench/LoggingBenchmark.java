@@ -0,0 +1,101 @@
+package multithreading.bench;
+
+import multithreading.log.AsyncLogger;
+import multithreading.log.LogTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one log line on the calling thread: {@code PrintStream.printf} as the demos used to do
+ * it, against {@link AsyncLogger} with a blocking and with a dropping overflow policy. Both write
+ * to a sink that discards the bytes, so the numbers are the logging machinery alone, not the
+ * terminal.
+ *
+ * Usage: gradle :jmh:sweep -Pargs='LoggingBenchmark [maxThreads=2 x cores]'  (1, 2, 4, ... N threads)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final LogTemplate LINE = LogTemplate.of("{} acquired lock, old={}");
+
+    @State(Scope.Thread)
+    public static class Worker {
+        String name;
+        long n;
+
+        @Setup
+        public void setUp(ThreadParams thread) {
+            name = "Worker-" + thread.getThreadIndex();
+        }
+    }
+
+    // the async logger and its overflow policy; only the async benchmark is run per policy
+    @State(Scope.Benchmark)
+    public static class Async {
+        @Param({"BLOCK", "DROP"})
+        public AsyncLogger.Overflow overflow;
+
+        AsyncLogger log;
+
+        @Setup
+        public void setUp() {
+            WritableByteChannel nullChannel = new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer src) {
+                    int n = src.remaining();
+                    src.position(src.limit());
+                    return n;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            log = new AsyncLogger("bench", nullChannel, 4096, 256, overflow);
+        }
+
+        @TearDown
+        public void tearDown() {
+            log.close();
+        }
+    }
+
+    private final PrintStream printStream = new PrintStream(OutputStream.nullOutputStream());
+
+    @Benchmark
+    public void printf(Worker w) {
+        printStream.printf("%s acquired lock, old=%d%n", w.name, w.n++);
+    }
+
+    @Benchmark
+    public boolean async(Async async, Worker w) {
+        return async.log.log(LINE, w.name, w.n++);
+    }
+}
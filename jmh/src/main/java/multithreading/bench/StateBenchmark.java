@@ -0,0 +1,66 @@
+package multithreading.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-mostly and write-heavy workloads over every {@link Counters} variant, including the
+ * multithreading.state implementations (the interesting part starts past 8 cores).
+ *
+ * readMostly: 1 increment per {@code readsPerWrite} reads.
+ * writeHeavy: every operation is an increment, with a read every 64 operations.
+ *
+ * Usage: gradle :jmh:sweep -Pargs='StateBenchmark [maxThreads=2 x cores]'  (1, 2, 4, ... N threads)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class StateBenchmark {
+
+    // each thread gets its own op counter, so the mix costs nothing shared
+    @State(Scope.Thread)
+    public static class Mix {
+        int op;
+    }
+
+    @Param({"synchronized", "AtomicInteger", "LongAdder", "ReentrantLock", "ReentrantLock(fair)", "StampedLock",
+            "striped", "lock-free accumulator"})
+    public String variant;
+
+    @Param("31")
+    public int readsPerWrite;
+
+    private Counters.Counter counter;
+
+    @Setup
+    public void setUp() {
+        counter = Counters.named(variant).factory.get();
+    }
+
+    @Benchmark
+    public void readMostly(Mix mix, Blackhole bh) {
+        if (mix.op++ % (readsPerWrite + 1) == 0) counter.increment();
+        else bh.consume(counter.get());
+    }
+
+    @Benchmark
+    public void writeHeavy(Mix mix, Blackhole bh) {
+        if ((++mix.op & 63) == 0) bh.consume(counter.get());
+        else counter.increment();
+    }
+}
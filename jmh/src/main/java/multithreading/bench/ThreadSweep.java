@@ -0,0 +1,96 @@
+package multithreading.bench;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Statistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the matching JMH benchmarks at 1, 2, 4, ... N threads (N = second argument, default
+ * 2 x available processors) and prints one table: ops/s from the Throughput run, p50 and p99
+ * from the SampleTime run, for every benchmark, parameter combination and thread count.
+ *
+ * Usage: ThreadSweep [benchmarkRegex=CounterBenchmark] [maxThreads]
+ */
+public class ThreadSweep {
+
+    private static final class Row {
+        final String label;
+        final int threads;
+        double opsPerSecond;
+        double p50Nanos;
+        double p99Nanos;
+
+        Row(String label, int threads) {
+            this.label = label;
+            this.threads = threads;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-52s %3d %14.0f %8.0f %8.0f", label, threads, opsPerSecond, p50Nanos, p99Nanos);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "CounterBenchmark";
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (int threads : threadCounts(maxThreads)) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .build();
+            for (RunResult r : new Runner(options).run()) {
+                BenchmarkParams params = r.getParams();
+                String label = label(params);
+                Row row = rows.computeIfAbsent(label + "@" + threads, k -> new Row(label, threads));
+                if (params.getMode() == Mode.Throughput) {
+                    row.opsPerSecond = r.getPrimaryResult().getScore() * 1e9; // ops/ns
+                } else if (params.getMode() == Mode.SampleTime) {
+                    Statistics stats = r.getPrimaryResult().getStatistics();
+                    row.p50Nanos = stats.getPercentile(50);
+                    row.p99Nanos = stats.getPercentile(99);
+                }
+            }
+        }
+
+        System.out.printf("%ncores=%d java=%s%n%n", Runtime.getRuntime().availableProcessors(),
+                System.getProperty("java.version"));
+        System.out.printf("%-52s %3s %14s %8s %8s%n", "benchmark", "thr", "ops/s", "p50 ns", "p99 ns");
+        for (Row row : rows.values()) {
+            System.out.println(row);
+        }
+    }
+
+    // CounterBenchmark.increment variant=LongAdder
+    private static String label(BenchmarkParams params) {
+        String name = params.getBenchmark();
+        StringBuilder sb = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+        for (String key : params.getParamsKeys()) {
+            sb.append(' ').append(key).append('=').append(params.getParam(key));
+        }
+        return sb.toString();
+    }
+
+    /** 1, 2, 4, ... up to {@code max}, always including {@code max} itself. */
+    static int[] threadCounts(int max) {
+        int n = 0;
+        for (int t = 1; t < max; t <<= 1) n++;
+        int[] counts = new int[n + 1];
+        int i = 0;
+        for (int t = 1; t < max; t <<= 1) counts[i++] = t;
+        counts[i] = max;
+        return counts;
+    }
+}
@@ -0,0 +1,66 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Drives a large generated fleet through startup -> health -> traffic with {@link ServicePipeline}
+ * on a single {@link EventLoop} thread, the async counterpart of MicroserviceOrchestrator.
+ *
+ * Usage: AsyncOrchestratorDemo [services=10000] [layers=4] [maxDeps=2] [seed=7]
+ * Service i in layer k depends on up to maxDeps random services from layer k-1.
+ */
+public class AsyncOrchestratorDemo {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int layers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int maxDeps = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 7;
+
+        Map<String, List<String>> deps = generate(count, layers, maxDeps, new Random(seed));
+        Map<String, Service> services = MicroserviceOrchestrator.buildServices(deps);
+        for (Service s : services.values()) {
+            s.verbose = false;
+        }
+
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        System.out.printf("Starting %d services in %d layers on one event loop (threads before: %d)%n",
+                count, layers, threadsBefore);
+
+        try {
+            System.out.println(ServicePipeline.standard().runAll(services).get());
+        } catch (ExecutionException e) {
+            // the report of a partially failed run is the exception message
+            System.out.println(e.getCause().getMessage());
+        }
+        System.out.printf("threads now: %d, peak: %d%n", ManagementFactory.getThreadMXBean().getThreadCount(),
+                ManagementFactory.getThreadMXBean().getPeakThreadCount());
+    }
+
+    static Map<String, List<String>> generate(int count, int layers, int maxDeps, Random random) {
+        Map<String, List<String>> deps = new LinkedHashMap<>();
+        int perLayer = Math.max(1, (count + layers - 1) / layers);
+        for (int i = 0; i < count; i++) {
+            int layer = i / perLayer;
+            List<String> d = new ArrayList<>();
+            if (layer > 0) {
+                int from = (layer - 1) * perLayer;
+                int n = random.nextInt(maxDeps + 1);
+                for (int k = 0; k < n; k++) {
+                    String dep = "svc-" + (from + random.nextInt(perLayer));
+                    if (!d.contains(dep)) d.add(dep);
+                }
+            }
+            deps.put("svc-" + i, d);
+        }
+        return deps;
+    }
+}
@@ -1,15 +1,21 @@
 package multithreading;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import multithreading.pool.AdaptiveThreadPoolExecutor;
+import multithreading.pool.OverloadPolicies;
+
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 public class CustomThreadPoolDemo {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
 
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 4, 10, TimeUnit.SECONDS, new ArrayBlockingQueue<>(2), Executors.defaultThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        // Starts with 2 core threads and a queue of 2 like the old ThreadPoolExecutor(2, 4, 10s,
+        // ArrayBlockingQueue(2)), but may grow to 8 threads: the core size grows while tasks wait
+        // longer than 100ms, and a full queue makes the submitter wait up to 500ms instead of
+        // running the task itself (CallerRunsPolicy stalled intake).
+        AdaptiveThreadPoolExecutor executor = new AdaptiveThreadPoolExecutor("custom", 2, 8, 2,
+                100, 250, OverloadPolicies.boundedWait(500, TimeUnit.MILLISECONDS));
 
         Runnable task = ()-> {
             String name = Thread.currentThread().getName();
@@ -22,16 +28,26 @@ public class CustomThreadPoolDemo {
             System.out.println(name + " finished task");
         };
 
-        System.out.println("Submitting 8 tasks");
+        System.out.println("Submitting 8 tasks, then a burst of 16");
 
-        for (int i = 1; i <=8 ; i++) {
+        for (int i = 1; i <= 24 ; i++) {
             final int id = i;
-            executor.submit(()-> {
-                System.out.println("Task " + id + " started by " + Thread.currentThread().getName());
-                task.run();
-            });
+            try {
+                executor.submit(()-> {
+                    System.out.println("Task " + id + " started by " + Thread.currentThread().getName());
+                    task.run();
+                });
+            } catch (RejectedExecutionException e) {
+                System.out.println("Task " + id + " rejected: " + e.getMessage());
+            }
+            if (i == 8) {
+                Thread.sleep(1500);
+                System.out.println(executor.stats());
+            }
         }
 
         executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.println(executor.stats());
     }
 }
@@ -1,15 +1,33 @@
 package multithreading;
 
+import multithreading.state.LongCounter;
+
+/**
+ * Usage: DataRaceDemo [synchronized|striped|optimistic|accumulator]
+ */
 public class DataRaceDemo {
-    static class Counter {
+    static class Counter implements LongCounter {
         int count = 0;
-        synchronized void increment() {
-            count++;
+
+        @Override
+        public synchronized void add(long delta) {
+            count += delta;
+        }
+
+        @Override
+        public synchronized long get() {
+            return count;
+        }
+
+        @Override
+        public synchronized void reset() {
+            count = 0;
         }
     }
 
     public static void main(String[] args) throws InterruptedException {
-        Counter counter = new Counter();
+        String kind = args.length > 0 ? args[0] : "synchronized";
+        LongCounter counter = kind.equals("synchronized") ? new Counter() : LongCounter.create(kind);
 
         Runnable task = () -> {
             for (int i = 0; i < 1000; i++) {
@@ -28,6 +46,6 @@ public class DataRaceDemo {
         }
 
         System.out.println("Expected: 1,000,000");
-        System.out.println("Actual:   " + counter.count);
+        System.out.println("Actual:   " + counter.get() + " (" + kind + ")");
     }
 }
@@ -0,0 +1,47 @@
+package multithreading;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single daemon thread that owns timers and runs the continuations they complete. Simulated
+ * work ({@link #delay}) is a timer, not a sleeping thread, so one loop can keep thousands of
+ * services "busy" at once; callbacks must therefore never block.
+ */
+final class EventLoop implements Executor {
+
+    private static final EventLoop SHARED = new EventLoop("service-loop");
+
+    private final ScheduledExecutorService scheduler;
+
+    EventLoop(String name) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static EventLoop shared() {
+        return SHARED;
+    }
+
+    /** Completes on the loop thread after {@code millis}. */
+    CompletableFuture<Void> delay(long millis) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        scheduler.schedule(() -> done.complete(null), millis, TimeUnit.MILLISECONDS);
+        return done;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        scheduler.execute(task);
+    }
+
+    void shutdown() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,85 @@
+package multithreading;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Switch between pooled platform threads and one virtual thread per task.
+ *
+ * Select with {@code -Dexec.mode=platform|virtual} (default platform). Virtual threads need a
+ * JDK 21+ runtime; the project still targets 17, so they are created reflectively and asking
+ * for VIRTUAL on an older runtime fails fast instead of silently falling back.
+ */
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL;
+
+    public static ExecutionMode fromSystemProperty() {
+        return valueOf(System.getProperty("exec.mode", "platform").toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * PLATFORM: a fixed pool of {@code platformThreads} named {@code name-N}.
+     * VIRTUAL: an unbounded thread-per-task executor of virtual threads named {@code name-N};
+     * {@code platformThreads} is ignored because there is no pool to size.
+     */
+    public ExecutorService newExecutor(String name, int platformThreads) {
+        if (this == PLATFORM) {
+            return Executors.newFixedThreadPool(platformThreads, platformThreadFactory(name));
+        }
+        return newVirtualThreadPerTaskExecutor(name);
+    }
+
+    public static ThreadFactory platformThreadFactory(String name) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> new Thread(r, name + "-" + seq.incrementAndGet());
+    }
+
+    public static boolean virtualThreadsAvailable() {
+        return IS_VIRTUAL != null;
+    }
+
+    public static boolean isVirtual(Thread t) {
+        if (IS_VIRTUAL == null) return false;
+        try {
+            return (boolean) IS_VIRTUAL.invoke(t);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String name) {
+        if (!virtualThreadsAvailable()) {
+            throw new IllegalStateException("virtual threads need a JDK 21+ runtime, running on "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            // Thread.ofVirtual().name(name + "-", 1).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("could not create a virtual-thread executor", e);
+        }
+    }
+
+    private static final Method IS_VIRTUAL;
+
+    static {
+        Method m;
+        try {
+            m = Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            m = null;
+        }
+        IS_VIRTUAL = m;
+    }
+}
@@ -0,0 +1,109 @@
+package multithreading;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the same blocking workload in PLATFORM and VIRTUAL mode.
+ *
+ * Usage: ExecutionModeBenchmark [tasks=10000] [sleepMs=50] [platformThreads=200]
+ *
+ * Each task looks like one service startup or one download chunk: mostly sleeping. The
+ * "synchronized" variant blocks while holding a monitor (pins the carrier on JDK 21), the
+ * "lock" variant does the same under a ReentrantLock (does not pin).
+ */
+public class ExecutionModeBenchmark {
+
+    private static final int STRIPES = 64;
+    private static final Object[] MONITORS = new Object[STRIPES];
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            MONITORS[i] = new Object();
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int sleepMs = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int platformThreads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        System.out.printf("tasks=%d sleep=%dms platformThreads=%d java=%s%n%n",
+                tasks, sleepMs, platformThreads, System.getProperty("java.version"));
+        System.out.printf("%-9s %-13s %10s %12s %12s%n", "mode", "workload", "wall ms", "tasks/s", "peak thr");
+
+        for (String workload : new String[]{"sleep", "synchronized", "lock"}) {
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                if (mode == ExecutionMode.VIRTUAL && !ExecutionMode.virtualThreadsAvailable()) {
+                    System.out.printf("%-9s %-13s %s%n", mode, workload, "skipped (needs JDK 21+)");
+                    continue;
+                }
+                run(mode, workload, tasks, sleepMs, platformThreads);
+            }
+        }
+    }
+
+    private static void run(ExecutionMode mode, String workload, int tasks, int sleepMs, int platformThreads)
+            throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        PinningMonitor pins = PinningMonitor.startIfVirtual(mode);
+        ExecutorService executor = mode.newExecutor("bench", platformThreads);
+        CountDownLatch done = new CountDownLatch(tasks);
+        long begin = System.nanoTime();
+
+        for (int i = 0; i < tasks; i++) {
+            int stripe = i % STRIPES;
+            executor.execute(() -> {
+                try {
+                    work(workload, stripe, sleepMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+
+        long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        System.out.printf("%-9s %-13s %10d %12.0f %12d%n", mode, workload, wallMs,
+                tasks * 1000.0 / Math.max(1, wallMs), threads.getPeakThreadCount());
+        if (pins != null) {
+            pins.close();
+            System.out.println(pins.report());
+        }
+    }
+
+    // 1ms of the sleep happens inside the critical section for the lock-based variants
+    private static void work(String workload, int stripe, int sleepMs) throws InterruptedException {
+        switch (workload) {
+            case "synchronized":
+                synchronized (MONITORS[stripe]) {
+                    Thread.sleep(1);
+                }
+                break;
+            case "lock":
+                LOCKS[stripe].lock();
+                try {
+                    Thread.sleep(1);
+                } finally {
+                    LOCKS[stripe].unlock();
+                }
+                break;
+            default:
+                break;
+        }
+        Thread.sleep(sleepMs);
+    }
+}
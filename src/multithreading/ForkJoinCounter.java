@@ -0,0 +1,77 @@
+package multithreading;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * CPU-bound counting on a work-stealing ForkJoinPool.
+ *
+ * The range is split in halves until pieces are below {@code threshold}; each leaf accumulates
+ * into a local variable and the partial sums are combined on the way back up the tree. No
+ * thread ever touches a shared counter, so there is nothing to contend on, and idle workers
+ * steal the larger unsplit halves from busy ones.
+ */
+public class ForkJoinCounter implements AutoCloseable {
+
+    static final class RangeSum extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final long threshold;
+        private final LongUnaryOperator work;
+
+        RangeSum(long from, long to, long threshold, LongUnaryOperator work) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.work = work;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= threshold) {
+                long local = 0;
+                for (long i = from; i < to; i++) {
+                    local += work.applyAsLong(i);
+                }
+                return local;
+            }
+            long mid = (from + to) >>> 1;
+            RangeSum left = new RangeSum(from, mid, threshold, work);
+            left.fork();
+            long right = new RangeSum(mid, to, threshold, work).compute();
+            return right + left.join();
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    public ForkJoinCounter(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    /** Sum of {@code work(i)} for i in [0, n); the range is split until pieces hold at most {@code threshold} items. */
+    public long sum(long n, long threshold, LongUnaryOperator work) {
+        return pool.invoke(new RangeSum(0, n, Math.max(1, threshold), work));
+    }
+
+    /** Picks a threshold that gives each worker ~8 leaves to steal from. */
+    public long sum(long n, LongUnaryOperator work) {
+        return sum(n, Math.max(1_000, n / (parallelism() * 8L)), work);
+    }
+
+    public long steals() {
+        return pool.getStealCount();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
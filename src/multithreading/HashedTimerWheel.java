@@ -0,0 +1,152 @@
+package multithreading;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel: {@code wheelSize} buckets, one per tick, and a single thread that visits
+ * one bucket per tick. A timer lands in bucket {@code deadlineTick & mask} with the number of
+ * full revolutions still to wait, so scheduling and cancelling are O(1) no matter how many
+ * timers are pending - unlike a ScheduledExecutorService, whose delay queue is a heap. The
+ * price is resolution: a timer fires up to one tick late.
+ *
+ * New timers go through a lock-free queue and are moved into their bucket by the wheel thread,
+ * which is the only thread that ever touches the buckets. Expired tasks run on
+ * {@code dispatcher}; with a direct executor they run on the wheel thread and must not block.
+ */
+final class HashedTimerWheel implements AutoCloseable {
+
+    final class Timeout {
+        final Runnable task;
+        final long deadlineNanos;
+        long rounds;
+        Timeout next; // bucket list, wheel thread only
+        // 0 = pending, 1 = cancelled, 2 = expired; whichever of cancel/expire wins settles it
+        private final AtomicInteger state = new AtomicInteger();
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /** O(1): the wheel drops the timer when it next visits its bucket. False if it already fired. */
+        boolean cancel() {
+            if (!state.compareAndSet(0, 1)) return false;
+            pending.decrementAndGet();
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state.get() == 1;
+        }
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final Timeout[] buckets;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Executor dispatcher;
+    private final Thread worker;
+    private final long startNanos;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean closed;
+
+    final LongAdder fired = new LongAdder();
+
+    HashedTimerWheel(String name, long tickMs, int wheelSize, Executor dispatcher) {
+        if (tickMs < 1 || wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("tickMs must be >= 1 and wheelSize a power of two");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.mask = wheelSize - 1;
+        this.buckets = new Timeout[wheelSize];
+        this.dispatcher = dispatcher;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Runs {@code task} once, {@code delayMs} from now (rounded up to the next tick). */
+    Timeout schedule(Runnable task, long delayMs) {
+        if (closed) throw new IllegalStateException("timer wheel closed");
+        Timeout t = new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs)));
+        pending.incrementAndGet();
+        incoming.add(t);
+        return t;
+    }
+
+    /** Timers scheduled and neither fired nor cancelled yet. */
+    int pending() {
+        return pending.get();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!closed) {
+            long tickDeadline = startNanos + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = tickDeadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleep);
+                if (closed) return;
+            }
+            transferIncoming(tick);
+            expire(tick);
+            tick++;
+        }
+    }
+
+    private void transferIncoming(long currentTick) {
+        Timeout t;
+        while ((t = incoming.poll()) != null) {
+            if (t.isCancelled()) continue;
+            // never into a bucket the wheel has already passed: at the earliest, the current one
+            long deadlineTick = Math.max(currentTick, ceilDiv(t.deadlineNanos - startNanos, tickNanos) - 1);
+            t.rounds = (deadlineTick - currentTick) / buckets.length;
+            int index = (int) (deadlineTick & mask);
+            t.next = buckets[index];
+            buckets[index] = t;
+        }
+    }
+
+    private void expire(long tick) {
+        int index = (int) (tick & mask);
+        Timeout kept = null;
+        Timeout t = buckets[index];
+        while (t != null) {
+            Timeout next = t.next;
+            if (t.isCancelled()) {
+                // dropped; pending was decremented by cancel()
+            } else if (t.rounds > 0) {
+                t.rounds--;
+                t.next = kept;
+                kept = t;
+            } else if (t.state.compareAndSet(0, 2)) {
+                pending.decrementAndGet();
+                fired.increment();
+                try {
+                    dispatcher.execute(t.task);
+                } catch (RuntimeException e) {
+                    System.out.printf("[%s] timer task failed: %s%n", worker.getName(), e);
+                }
+            }
+            t = next;
+        }
+        buckets[index] = kept;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+}
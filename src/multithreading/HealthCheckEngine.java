@@ -0,0 +1,234 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+import multithreading.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Shared, non-blocking health-check engine.
+ *
+ * - a sweep has one deadline for all services, so N services cost ~one timeout, not N of them
+ * - results are handed out in completion order, so a slow service never delays a fast one
+ * - a probe still running after the observed latency percentile gets a hedged second probe;
+ *   whichever answers first wins and the loser is cancelled
+ * - OK results are cached for a short TTL, so back-to-back sweeps skip known-healthy services;
+ *   {@link #trust} pre-loads that cache, e.g. from a snapshot written by the previous run;
+ *   {@link #invalidate} drops it when the service restarts, so a post-restart check really probes
+ */
+class HealthCheckEngine implements AutoCloseable {
+
+    enum Status { OK, FAIL, TIMEOUT, ERROR }
+
+    static final class Result {
+        final String service;
+        final Status status;
+        final long latencyMs;
+        final boolean cached;
+        final boolean hedged;
+        final long checkedAtNanos;
+
+        Result(String service, Status status, long latencyMs, boolean cached, boolean hedged) {
+            this.service = service;
+            this.status = status;
+            this.latencyMs = latencyMs;
+            this.cached = cached;
+            this.hedged = hedged;
+            this.checkedAtNanos = System.nanoTime();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[health-check] %s -> %s (%dms%s%s)", service, status, latencyMs,
+                    cached ? ", cached" : "", hedged ? ", hedged" : "");
+        }
+    }
+
+    // a probe submitted for one check, with when it was submitted
+    private static final class Probe {
+        final Future<?> future;
+        final long startNanos;
+
+        Probe(Future<?> future, long startNanos) {
+            this.future = future;
+            this.startNanos = startNanos;
+        }
+    }
+
+    // hedging only kicks in once the latency distribution has enough samples to be meaningful
+    private static final int MIN_SAMPLES_FOR_HEDGING = 20;
+
+    private final ExecutorService probes;
+    private final long cacheTtlNanos;
+    private final double hedgePercentile;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "health-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final LatencyHistogram probeLatencyMs = new LatencyHistogram();
+    // service -> nanoTime until which its last OK is trusted without probing
+    private final Map<String, Long> okUntilNanos = new ConcurrentHashMap<>();
+    // one-shot OKs vouched for by someone else (see trust), each answers a single check
+    private final Map<String, Long> trustedUntilNanos = new ConcurrentHashMap<>();
+    // service -> nanoTime of its last invalidate; probes begun before that are not cached
+    private final Map<String, Long> invalidatedAtNanos = new ConcurrentHashMap<>();
+
+    HealthCheckEngine(ExecutorService probes, long cacheTtlMs, double hedgePercentile) {
+        this.probes = probes;
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMs);
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    HealthCheckEngine(ExecutorService probes) {
+        this(probes, 1000, 95);
+    }
+
+    /** Checks one service; the future always completes (TIMEOUT at the latest after timeoutMs). */
+    CompletableFuture<Result> check(Service s, long timeoutMs) {
+        Long okUntil = okUntilNanos.get(s.name);
+        if (okUntil != null && System.nanoTime() - okUntil < 0) {
+            return CompletableFuture.completedFuture(new Result(s.name, Status.OK, 0, true, false));
+        }
+        // only a check the TTL cache did not answer uses up the trust
+        Long trusted = trustedUntilNanos.remove(s.name);
+        if (trusted != null && System.nanoTime() - trusted < 0) {
+            return CompletableFuture.completedFuture(new Result(s.name, Status.OK, 0, true, false));
+        }
+
+        long begin = System.nanoTime();
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        List<Probe> inFlight = new ArrayList<>(2);
+
+        synchronized (inFlight) {
+            inFlight.add(new Probe(probe(s, begin, false, result), System.nanoTime()));
+        }
+
+        if (probeLatencyMs.count() >= MIN_SAMPLES_FOR_HEDGING) {
+            long hedgeAfterMs = probeLatencyMs.percentile(hedgePercentile);
+            if (hedgeAfterMs < timeoutMs) {
+                timer.schedule(() -> {
+                    if (result.isDone()) return;
+                    synchronized (inFlight) {
+                        inFlight.add(new Probe(probe(s, begin, true, result), System.nanoTime()));
+                    }
+                }, hedgeAfterMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        Future<?> timeout = timer.schedule(
+                () -> result.complete(new Result(s.name, Status.TIMEOUT, timeoutMs, false, false)),
+                timeoutMs, TimeUnit.MILLISECONDS);
+
+        // runs on the timer thread so the winning probe never interrupts itself
+        CompletableFuture<Result> outcome = result.whenCompleteAsync((r, e) -> {
+            timeout.cancel(false);
+            synchronized (inFlight) {
+                long now = System.nanoTime();
+                for (Probe p : inFlight) {
+                    // no-op for the probe that won; a probe stopped here (lost the race, or the
+                    // check timed out) took at least this long, and leaving it out of the
+                    // histogram would make the hedge percentile too low
+                    if (p.future.cancel(true)) probeLatencyMs.record(TimeUnit.NANOSECONDS.toMillis(now - p.startNanos));
+                }
+            }
+            Long invalidated = invalidatedAtNanos.get(s.name);
+            if (r != null && r.status == Status.OK && (invalidated == null || begin - invalidated > 0)) {
+                okUntilNanos.put(s.name, r.checkedAtNanos + cacheTtlNanos);
+            } else {
+                okUntilNanos.remove(s.name);
+            }
+        }, timer);
+        // cancelling the returned future (e.g. a failing TaskScope) stops the probes as well
+        outcome.whenComplete((r, e) -> {
+            if (e instanceof CancellationException) result.cancel(false);
+        });
+        return outcome;
+    }
+
+    /**
+     * Answers the next check of {@code service} with OK instead of probing it, provided that
+     * check comes within {@code forMs}; later checks probe as usual.
+     */
+    void trust(String service, long forMs) {
+        trustedUntilNanos.put(service, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(forMs));
+    }
+
+    /**
+     * Forgets every cached or trusted OK for {@code service}, e.g. because it was just restarted:
+     * the next check probes it, and a probe that was already running is not cached.
+     */
+    void invalidate(String service) {
+        invalidatedAtNanos.put(service, System.nanoTime());
+        okUntilNanos.remove(service);
+        trustedUntilNanos.remove(service);
+    }
+
+    private Future<?> probe(Service s, long begin, boolean hedged, CompletableFuture<Result> result) {
+        try {
+            return probes.submit(() -> {
+                long probeBegin = System.nanoTime();
+                Status status;
+                try {
+                    status = s.healthCheckTask().call() ? Status.OK : Status.FAIL;
+                } catch (InterruptedException e) {
+                    return; // lost the race (or timed out) and was cancelled; check() records it
+                } catch (Exception e) {
+                    status = Status.ERROR;
+                }
+                probeLatencyMs.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - probeBegin));
+                result.complete(new Result(s.name, status,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), false, hedged));
+            });
+        } catch (RejectedExecutionException e) {
+            result.complete(new Result(s.name, Status.ERROR, 0, false, hedged));
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Checks every service inside {@code scope}, all against one deadline: {@code timeoutMs} or
+     * whatever is left of the scope's own deadline, if that is sooner. {@code onResult} sees
+     * results in the order they complete; a service that does not answer in time is reported as
+     * TIMEOUT. Returns once every check has answered, or throws if the scope fails (e.g. its
+     * parent was cancelled), in which case the outstanding probes are cancelled.
+     */
+    List<Result> sweep(TaskScope scope, Collection<Service> services, long timeoutMs, Consumer<Result> onResult)
+            throws InterruptedException {
+        long deadlineMs = Math.min(timeoutMs, scope.remainingMs());
+        List<Result> results = new ArrayList<>(services.size());
+        for (Service s : services) {
+            CompletableFuture<Result> check = check(s, deadlineMs);
+            scope.adopt(s.name, check.thenAccept(r -> {
+                synchronized (results) {
+                    results.add(r);
+                    onResult.accept(r);
+                }
+            })).whenComplete((v, e) -> {
+                if (e instanceof CancellationException) check.cancel(false);
+            });
+        }
+        scope.join();
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
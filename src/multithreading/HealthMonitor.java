@@ -0,0 +1,181 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+import multithreading.metrics.LatencyHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Continuous health monitoring on a {@link HashedTimerWheel}.
+ *
+ * Every watched service has one pending timer at a time: when it fires, the service is probed
+ * with the non-blocking {@link Service#checkAsync()}, and the next probe is scheduled from the
+ * probe's callback at the service's interval plus/minus jitter, so probes of services added
+ * together drift apart instead of arriving in waves. No thread is held per service and
+ * scheduling is O(1), which keeps 10k monitored services cheap.
+ *
+ * {@code failureThreshold} consecutive failures flip {@code Service.healthy} to false and
+ * {@code recoveryThreshold} consecutive successes flip it back. A service that keeps failing
+ * for {@code restartThreshold} probes is restarted with {@link Service#restartAsync()}; it is
+ * not probed while restarting.
+ */
+class HealthMonitor implements AutoCloseable {
+
+    private final class Watch {
+        final Service service;
+        final long intervalMs;
+        final double jitter;
+        // only touched from the probe chain of this service, which is strictly sequential
+        int consecutiveFailures;
+        int consecutiveSuccesses;
+        long scheduledAtNanos;
+        volatile HashedTimerWheel.Timeout timer;
+        volatile boolean stopped;
+
+        Watch(Service service, long intervalMs, double jitter) {
+            this.service = service;
+            this.intervalMs = intervalMs;
+            this.jitter = jitter;
+        }
+
+        void stop() {
+            stopped = true;
+            HashedTimerWheel.Timeout t = timer;
+            if (t != null) t.cancel();
+        }
+
+        void scheduleNext(long delayMs) {
+            if (stopped || closed) return;
+            scheduledAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+            timer = wheel.schedule(this::probe, delayMs);
+        }
+
+        long nextDelayMs() {
+            double spread = jitter * intervalMs;
+            return Math.max(1, intervalMs + (long) ThreadLocalRandom.current().nextDouble(-spread, spread + 1e-9));
+        }
+
+        void probe() {
+            if (stopped || closed) return;
+            lagMs.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledAtNanos));
+            long begin = System.nanoTime();
+            checks.increment();
+            service.checkAsync().toCompletableFuture()
+                    .orTimeout(probeTimeoutMs, TimeUnit.MILLISECONDS)
+                    .whenComplete((ok, e) -> {
+                        probeMs.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+                        if (e == null && ok) succeeded(); else failed();
+                    });
+        }
+
+        private void succeeded() {
+            consecutiveFailures = 0;
+            if (++consecutiveSuccesses == recoveryThreshold && !service.healthy) {
+                service.healthy = true;
+                recovered.increment();
+                log("[monitor] %s healthy again after %d good probes%n", service.name, recoveryThreshold);
+            }
+            scheduleNext(nextDelayMs());
+        }
+
+        private void failed() {
+            failures.increment();
+            consecutiveSuccesses = 0;
+            consecutiveFailures++;
+            if (consecutiveFailures == failureThreshold && service.healthy) {
+                service.healthy = false;
+                markedDown.increment();
+                log("[monitor] %s marked UNHEALTHY after %d failed probes%n", service.name, failureThreshold);
+            }
+            if (consecutiveFailures >= restartThreshold) {
+                restarts.increment();
+                log("[monitor] %s failing for %d probes, restarting%n", service.name, consecutiveFailures);
+                consecutiveFailures = 0;
+                service.restartAsync().whenComplete((v, e) -> {
+                    if (e == null) log("[monitor] %s restarted%n", service.name);
+                    scheduleNext(nextDelayMs());
+                });
+                return;
+            }
+            scheduleNext(nextDelayMs());
+        }
+    }
+
+    private final HashedTimerWheel wheel;
+    private final int failureThreshold;
+    private final int recoveryThreshold;
+    private final int restartThreshold;
+    private final long probeTimeoutMs;
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+    boolean verbose = true;
+
+    final LongAdder checks = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final LongAdder markedDown = new LongAdder();
+    final LongAdder recovered = new LongAdder();
+    final LongAdder restarts = new LongAdder();
+    final LatencyHistogram probeMs = new LatencyHistogram();
+    final LatencyHistogram lagMs = new LatencyHistogram(); // timer fire time vs scheduled time
+
+    HealthMonitor(HashedTimerWheel wheel, int failureThreshold, int recoveryThreshold, int restartThreshold,
+                  long probeTimeoutMs) {
+        if (failureThreshold < 1 || recoveryThreshold < 1 || restartThreshold < failureThreshold) {
+            throw new IllegalArgumentException("thresholds must be >= 1 and restartThreshold >= failureThreshold");
+        }
+        this.wheel = wheel;
+        this.failureThreshold = failureThreshold;
+        this.recoveryThreshold = recoveryThreshold;
+        this.restartThreshold = restartThreshold;
+        this.probeTimeoutMs = probeTimeoutMs;
+    }
+
+    /** 3 failures -> unhealthy, 2 successes -> healthy, 6 failures -> restart, 500ms probe timeout. */
+    HealthMonitor(HashedTimerWheel wheel) {
+        this(wheel, 3, 2, 6, 500);
+    }
+
+    /**
+     * Probes {@code s} every {@code intervalMs} +/- {@code jitter} (a fraction of the interval).
+     * The first probe comes at a random point within the first interval.
+     */
+    void watch(Service s, long intervalMs, double jitter) {
+        if (intervalMs < 1 || jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("intervalMs must be >= 1 and jitter in [0, 1)");
+        }
+        Watch w = new Watch(s, intervalMs, jitter);
+        Watch previous = watches.put(s.name, w);
+        if (previous != null) previous.stop();
+        w.scheduleNext(ThreadLocalRandom.current().nextLong(intervalMs) + 1);
+    }
+
+    void unwatch(String service) {
+        Watch w = watches.remove(service);
+        if (w != null) w.stop();
+    }
+
+    int watched() {
+        return watches.size();
+    }
+
+    private void log(String format, Object... args) {
+        if (verbose) System.out.printf(format, args);
+    }
+
+    String report() {
+        return String.format("[monitor] %d services, %d probes, %d failed, %d marked down, %d recovered, %d restarts%n"
+                        + "[monitor]   probe: %s%n[monitor]   timer lag: %s",
+                watches.size(), checks.sum(), failures.sum(), markedDown.sum(), recovered.sum(), restarts.sum(),
+                probeMs.summary("ms"), lagMs.summary("ms"));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Watch w : watches.values()) w.stop();
+    }
+}
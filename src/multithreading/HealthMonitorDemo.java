@@ -0,0 +1,58 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Monitors a large running fleet with {@link HealthMonitor}: one timer-wheel thread schedules
+ * every probe and the probes themselves run on the shared {@link EventLoop}, so the thread
+ * count stays flat however many services are watched. Roughly 5% of probes fail at random;
+ * now and then a service fails enough in a row to be marked down, keeps failing and is
+ * restarted.
+ *
+ * Usage: HealthMonitorDemo [services=10000] [seconds=10] [intervalMs=1000] [jitter=0.2]
+ */
+public class HealthMonitorDemo {
+
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long intervalMs = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        double jitter = args.length > 3 ? Double.parseDouble(args[3]) : 0.2;
+
+        Map<String, Service> services = MicroserviceOrchestrator.buildServices(
+                AsyncOrchestratorDemo.generate(count, 4, 2, new Random(7)));
+        for (Service s : services.values()) {
+            s.verbose = false;
+            s.healthy = true; // already running
+        }
+
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        // 10ms ticks, 512 buckets: one revolution covers 5.12s, longer delays just wait rounds
+        try (HashedTimerWheel wheel = new HashedTimerWheel("health-wheel", 10, 512, Runnable::run);
+             HealthMonitor monitor = new HealthMonitor(wheel)) {
+            monitor.verbose = count <= 100;
+            for (Service s : services.values()) {
+                monitor.watch(s, intervalMs, jitter);
+            }
+            System.out.printf("Monitoring %d services every %dms +/- %.0f%% (threads before: %d)%n",
+                    monitor.watched(), intervalMs, jitter * 100, threadsBefore);
+
+            long lastChecks = 0;
+            for (int i = 1; i <= seconds; i++) {
+                Thread.sleep(1000);
+                long checks = monitor.checks.sum();
+                long unhealthy = services.values().stream().filter(s -> !s.healthy).count();
+                System.out.printf("[monitor] t=%2ds %6d probes/s, %3d unhealthy, %d restarts, %d timers pending%n",
+                        i, checks - lastChecks, unhealthy, monitor.restarts.sum(), wheel.pending());
+                lastChecks = checks;
+            }
+            System.out.println(monitor.report());
+        }
+        System.out.printf("threads now: %d, peak: %d%n", ManagementFactory.getThreadMXBean().getThreadCount(),
+                ManagementFactory.getThreadMXBean().getPeakThreadCount());
+    }
+}
@@ -0,0 +1,71 @@
+package multithreading;
+
+import multithreading.pipeline.Pipeline;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * The ProducerConsumerDemo kitchen as a multi-stage {@link Pipeline}: orders -> prep -> cook ->
+ * plate -> serve, each stage with its own workers, inbox and speed. Cooking is batched (a pan
+ * takes as long for one dish as for four), serving is slow and single-threaded, so the kitchen
+ * settles at the speed of the slowest stage: the served-per-interval line stays flat and every
+ * inbox stays within its capacity instead of orders piling up in front of the bottleneck.
+ *
+ * Usage: KitchenPipelineDemo [orders=2000] [prepMs=2] [cookMs=8] [serveMs=1]
+ */
+public class KitchenPipelineDemo {
+
+    public static void main(String[] args) throws InterruptedException {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int prepMs = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int cookMs = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int serveMs = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        LongAdder served = new LongAdder();
+        Pipeline.Running kitchen = Pipeline.from("orders", IntStream.rangeClosed(1, orders).iterator())
+                .map("prep", 2, 16, order -> {
+                    pause(prepMs);
+                    return "Dish-" + order;
+                })
+                .mapBatch("cook", 2, 16, 4, (List<String> pan) -> {
+                    pause(cookMs);
+                    return pan;
+                })
+                .map("plate", 1, 16, dish -> dish + " (plated)")
+                .to("serve", 1, 32, 8, dishes -> {
+                    pause(serveMs * dishes.size());
+                    served.add(dishes.size());
+                })
+                .start();
+
+        System.out.printf("Kitchen pipeline: %d orders (prep %dms x2, cook %dms per pan of 4 x2, serve %dms x1)%n",
+                orders, prepMs, cookMs, serveMs);
+
+        long last = 0;
+        while (!kitchen.completion().isDone()) {
+            Thread.sleep(500);
+            long now = served.sum();
+            System.out.printf("[kitchen] served %5d (+%d)%n", now, now - last);
+            last = now;
+        }
+
+        try {
+            kitchen.completion().get();
+            System.out.println("All dishes prepared and served.");
+        } catch (ExecutionException e) {
+            System.out.println("kitchen failed: " + e.getCause());
+        }
+        System.out.println(kitchen.report());
+    }
+
+    private static void pause(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
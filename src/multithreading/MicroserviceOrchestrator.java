@@ -1,5 +1,9 @@
 package multithreading;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -9,51 +13,119 @@ import java.util.stream.Collectors;
 
 public class MicroserviceOrchestrator {
 
+    // how old a snapshot's OK health result may be for a warm restart to skip the probe
+    static final long WARM_TRUST_MS = 30_000;
+    // batch update: a service this much slower than the first to finish a phase is evicted from the batch
+    static final long BATCH_PHASE_TIMEOUT_MS = 3_000;
+
     static class Service{
         final String name;
         final List<String> dependencies;
         final List<String> dependents = new ArrayList<>();
-        final CountDownLatch dependencyLatch;
         volatile boolean healthy = false;
-
-        Service(String name, List<String> dependencies, CountDownLatch dependencyLatch){
+        volatile boolean serving = false;
+        volatile long lastStartupMs = 0;
+        volatile long lastRestartMs = 0;
+        // > 0 replaces the random startup duration, for reproducible large-graph runs
+        int fixedStartupMs = 0;
+        // the async API below runs on this loop; verbose=false silences it for large fleets
+        EventLoop loop = EventLoop.shared();
+        boolean verbose = true;
+
+        Service(String name, List<String> dependencies){
             this.name = name;
             this.dependencies = dependencies;
-            this.dependencyLatch = dependencyLatch;
         }
 
 //        simulate startup work
+//        callers (see StartupScheduler) only invoke this once every dependency is READY
 
         void startup() throws InterruptedException{
 
-            if(dependencyLatch.getCount() > 0) {
-                System.out.printf("[%s] waiting for %d dependencies to be ready%n", name, dependencyLatch.getCount());
-                dependencyLatch.await();
-//                blocks until all dependencies call countdown
-            }
-
-            int startupMs = 500 + (int)(Math.random()*1500);
-            System.out.printf("[%s] starting (will take %dms)...%n", name, startupMs);
+            int startupMs = fixedStartupMs > 0 ? fixedStartupMs : 500 + (int)(Math.random()*1500);
+            log("[%s] starting (will take %dms)...%n", name, startupMs);
+            long begin = System.nanoTime();
             Thread.sleep(startupMs);
 
+            // -Dorchestrator.fail=<service> makes that service's startup fail, to exercise fail-fast
+            if (name.equals(System.getProperty("orchestrator.fail"))) {
+                throw new IllegalStateException("injected startup failure");
+            }
+
 // Simulated health check: here we just set healthy = true
             healthy = true;
-            System.out.printf("[%s] is READY%n", name);
+            lastStartupMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+            log("[%s] is READY%n", name);
         }
 
         void restart() throws InterruptedException{
 
             System.out.printf("[%s] stopping for restart...%n", name);
+            long begin = System.nanoTime();
 
             Thread.sleep(200 + (int)(Math.random()*400));
             healthy = false;
             System.out.printf("[%s] starting after restart...%n", name);
             Thread.sleep(300 + (int)(Math.random()*700));
             healthy = true;
+            lastRestartMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
             System.out.printf("[%s] back UP after restart%n", name);
 
         }
 
+        // Non-blocking counterparts: the simulated work is a timer on the event loop, so no thread
+        // is held while a service starts, restarts or answers a probe. startAsync and
+        // enableTrafficAsync change state in the returned stage's own action, so a caller that
+        // cancels (or times out) that stage first leaves the service as it was.
+
+        CompletionStage<Void> startAsync() {
+            int startupMs = fixedStartupMs > 0 ? fixedStartupMs : 500 + (int)(Math.random()*1500);
+            log("[%s] starting (will take %dms)...%n", name, startupMs);
+            long begin = System.nanoTime();
+            return loop.delay(startupMs).thenRun(() -> {
+                if (name.equals(System.getProperty("orchestrator.fail"))) {
+                    throw new IllegalStateException("injected startup failure");
+                }
+                healthy = true;
+                lastStartupMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+                log("[%s] is READY%n", name);
+            });
+        }
+
+        CompletionStage<Void> restartAsync() {
+            log("[%s] stopping for restart...%n", name);
+            serving = false;
+            long begin = System.nanoTime();
+            return loop.delay(200 + (int)(Math.random()*400))
+                    .thenCompose(v -> {
+                        healthy = false;
+                        log("[%s] starting after restart...%n", name);
+                        return loop.delay(300 + (int)(Math.random()*700));
+                    })
+                    .thenRun(() -> {
+                        healthy = true;
+                        lastRestartMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+                        log("[%s] back UP after restart%n", name);
+                    });
+        }
+
+        CompletionStage<Boolean> checkAsync() {
+            return loop.delay(100 + (int)(Math.random() * 200))
+                    .thenApply(v -> healthy ? Math.random() < 0.95 : Math.random() < 0.20);
+        }
+
+        // put the service back behind the load balancer
+        CompletionStage<Void> enableTrafficAsync() {
+            return loop.delay(20 + (int)(Math.random() * 30)).thenRun(() -> {
+                serving = true;
+                log("[%s] serving traffic%n", name);
+            });
+        }
+
+        private void log(String format, Object... args) {
+            if (verbose) System.out.printf(format, args);
+        }
+
         // Simulated health check as Callable so it can be timed out
         Callable<Boolean> healthCheckTask() {
             return () -> {
@@ -77,106 +149,172 @@ public class MicroserviceOrchestrator {
                 "Notification", List.of("User")
         );
 
-        // Create CountDownLatch for each service equal to its dependency count
-        Map<String, CountDownLatch> readyLatches = new HashMap<>();
-        for (var entry : deps.entrySet()) {
-            readyLatches.put(entry.getKey(), new CountDownLatch(entry.getValue().size()));
-        }
-
-        // Create Service objects and map name->Service
-        Map<String, Service> services = new HashMap<>();
-        for (var entry : deps.entrySet()) {
-            services.put(entry.getKey(),
-                    new Service(entry.getKey(), entry.getValue(), readyLatches.get(entry.getKey())));
+        // -Dorchestrator.snapshot=<file>: a warm restart takes the graph, the measured startup
+        // times and the recent health results from the previous run's snapshot
+        Path snapshotPath = System.getProperty("orchestrator.snapshot") == null
+                ? null : Paths.get(System.getProperty("orchestrator.snapshot"));
+        OrchestratorSnapshot previous = null;
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            try {
+                previous = OrchestratorSnapshot.read(snapshotPath);
+                System.out.println(previous);
+            } catch (IOException e) {
+                System.out.println("[snapshot] ignored, cold start: " + e.getMessage());
+            }
         }
 
-        // Build dependents lists (so a service can notify its dependents after it becomes ready)
-
-        for(var s : services.values()){
-            for(String dep: s.dependencies) {
-                Service depService = services.get(dep);
-                depService.dependents.add(s.name);
+        Map<String, Service> services = buildServices(previous != null ? previous.graph() : deps);
+
+        // -Dexec.mode=virtual runs every startup/probe/restart on its own virtual thread
+        ExecutionMode mode = ExecutionMode.fromSystemProperty();
+        ExecutorService executor = mode.newExecutor("orchestrator", 6);
+        PinningMonitor pins = PinningMonitor.startIfVirtual(mode);
+
+        // Services are dispatched only once their dependencies are READY, so the pool never
+        // holds a thread parked on another service and any pool size >= 1 makes progress.
+        // Each stage runs in its own TaskScope under the orchestration-wide deadline: the first
+        // failure cancels its siblings and dependents and ends the orchestration with one report.
+        HealthCheckEngine healthChecks = new HealthCheckEngine(executor);
+        if (previous != null) {
+            // still healthy when the last run ended: trusted for the first sweep instead of re-probed
+            for (String name : previous.recentlyHealthy(WARM_TRUST_MS)) {
+                healthChecks.trust(name, WARM_TRUST_MS);
             }
         }
+        List<HealthCheckEngine.Result> lastHealth = List.of();
+        boolean failed = false;
+        long failedAtNanos = 0;
+        try (TaskScope orchestration = TaskScope.open("orchestration", executor, 60_000)) {
+            System.out.println("=== Orchestrator: Starting services (respecting dependencies) ===");
+            try (TaskScope startup = orchestration.child("startup", 15_000)) {
+                if (args.length > 0 && args[0].equals("async")) {
+                    // startup -> health -> traffic per service on one event loop, no pool threads.
+                    // A failed pipeline fails the scope; join() throws the scope's report, as in sync mode
+                    CompletableFuture<ServicePipeline.Report> pipeline = startup.adopt("pipeline",
+                            ServicePipeline.standard().runAll(services));
+                    startup.join();
+                    System.out.println(pipeline.join());
+                } else if (previous != null) {
+                    // warm: longest measured path first, at most one startup per pool thread
+                    System.out.println(TaskScope.await(new StartupScheduler(startup, services,
+                            previous.startupMs(), 6).start()));
+                } else {
+                    System.out.println(TaskScope.await(new StartupScheduler(startup, services).start()));
+                }
+            }
 
-        ExecutorService executor = Executors.newFixedThreadPool(6);
-
-        // Start all services concurrently: each service waits internally on its dependencyLatch
-
-        System.out.println("=== Orchestrator: Starting services (respecting dependencies) ===");
+            // Quick health check across all services, one deadline for the whole sweep
+            System.out.println("\n=== Orchestrator: Performing initial health checks ===");
+            performHealthChecks(orchestration, healthChecks, services, 500);
+
+            // Simulate triggering a rolling update (e.g., new version deploy)
+            // "batch" keeps the original fixed-batch, phase-by-phase update for comparison
+            System.out.println("\n=== Orchestrator: Triggering rolling update ===");
+            try (TaskScope update = orchestration.child("rolling-update", 30_000)) {
+                if (args.length > 0 && args[0].equals("batch")) {
+                    performRollingUpdate(update, healthChecks, services, 2, 3);
+                } else {
+                    System.out.println(TaskScope.await(new RollingUpdater(update, healthChecks, services, 2, 2).run()));
+                }
+            }
 
-        for (Service s : services.values()) {
-            executor.submit(() -> {
-                try {
-                    s.startup(); // waits for dependencies internally
-                    // Notify dependents: decrement their latch counts
-                    for (String dependentName : s.dependents) {
-                        CountDownLatch latchOfDependent = readyLatches.get(dependentName);
-                        // one dependency is satisfied
-                        latchOfDependent.countDown();
+            // Final health check
+            System.out.println("\n=== Orchestrator: Final health checks ===");
+            lastHealth = performHealthChecks(orchestration, healthChecks, services, 500);
+
+            // -Dorchestrator.monitorSeconds=N keeps probing every service on a timer wheel for N seconds
+            long monitorSeconds = Long.getLong("orchestrator.monitorSeconds", 0);
+            if (monitorSeconds > 0) {
+                System.out.printf("%n=== Orchestrator: Monitoring for %ds ===%n", monitorSeconds);
+                try (HashedTimerWheel wheel = new HashedTimerWheel("health-wheel", 10, 512, Runnable::run);
+                     HealthMonitor monitor = new HealthMonitor(wheel)) {
+                    for (Service s : services.values()) {
+                        monitor.watch(s, 1000, 0.2);
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(monitorSeconds));
+                    System.out.println(monitor.report());
                 }
-            });
+            }
+        } catch (TaskScope.FailedException e) {
+            failed = true;
+            failedAtNanos = System.nanoTime();
+            System.out.println();
+            System.out.println(e.getMessage());
         }
 
-        // Wait a bit for the system to stabilize
-        Thread.sleep(3000);
-
-        // Quick health check across all services using Futures with timeouts
-        System.out.println("\n=== Orchestrator: Performing initial health checks ===");
-        performHealthChecks(executor, services, 500);
-
-        // Simulate triggering a rolling update (e.g., new version deploy)
-        System.out.println("\n=== Orchestrator: Triggering rolling update ===");
-        performRollingUpdate(executor, services, 2, 3);
-
-        // Final health check
-        System.out.println("\n=== Orchestrator: Final health checks ===");
-        performHealthChecks(executor, services, 500);
-
+        if (snapshotPath != null && !failed) {
+            OrchestratorSnapshot.capture(services, lastHealth).write(snapshotPath);
+            System.out.println("[snapshot] written to " + snapshotPath);
+        }
+        healthChecks.close();
         executor.shutdown();
         executor.awaitTermination(10, TimeUnit.SECONDS);
-        System.out.println("\n=== Orchestrator: Done ===");
+        if (failed) {
+            System.out.printf("[orchestration] all threads released %dms after the failure report%n",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - failedAtNanos));
+        }
+        if (pins != null) {
+            pins.close();
+            System.out.println(pins.report());
+        }
+        System.out.println(failed ? "\n=== Orchestrator: FAILED ===" : "\n=== Orchestrator: Done ===");
+        if (failed) System.exit(1);
     }
 
 
-    static void performHealthChecks(ExecutorService executor, Map<String, Service> services, long timeoutMs) {
-        List<Future<Boolean>> futures = new ArrayList<>();
-        List<String> names = new ArrayList<>(services.keySet());
-        for (String name : names) {
-            Service s = services.get(name);
-            futures.add(executor.submit(s.healthCheckTask()));
+    // Create Service objects (name->Service) and wire up the dependents lists,
+    // so a service can notify its dependents after it becomes ready
+    static Map<String, Service> buildServices(Map<String, List<String>> deps) {
+        Map<String, Service> services = new HashMap<>();
+        for (var entry : deps.entrySet()) {
+            services.put(entry.getKey(), new Service(entry.getKey(), entry.getValue()));
         }
 
-        for (int i = 0; i < names.size(); i++) {
-            String name = names.get(i);
-            Future<Boolean> f = futures.get(i);
-            try {
-                Boolean ok = f.get(timeoutMs, TimeUnit.MILLISECONDS);
-                System.out.printf("[health-check] %s -> %s%n", name, ok ? "OK" : "FAIL");
-            } catch (TimeoutException te) {
-                System.out.printf("[health-check] %s -> TIMEOUT%n", name);
-                f.cancel(true);
-            } catch (Exception e) {
-                System.out.printf("[health-check] %s -> ERROR (%s)%n", name, e.getMessage());
+        for(var s : services.values()){
+            for(String dep: s.dependencies) {
+                Service depService = services.get(dep);
+                if (depService == null) {
+                    throw new IllegalArgumentException(s.name + " depends on unknown service " + dep);
+                }
+                depService.dependents.add(s.name);
             }
         }
+        return services;
+    }
+
+    static List<HealthCheckEngine.Result> performHealthChecks(TaskScope parent, HealthCheckEngine engine, Map<String, Service> services,
+                                    long deadlineMs) throws InterruptedException {
+        // one deadline for the whole sweep; results are printed in the order they arrive. The scope
+        // gets a little slack over the check timeout so the checks, not the scope, report TIMEOUT
+        List<HealthCheckEngine.Result> results;
+        try (TaskScope sweep = parent.child("health-check", deadlineMs + 100)) {
+            results = engine.sweep(sweep, services.values(), deadlineMs, System.out::println);
+        }
+        for (Service s : services.values()) {
+            if (results.stream().noneMatch(r -> r.service.equals(s.name))) {
+                System.out.printf("[health-check] %s -> TIMEOUT (no answer before the %dms deadline)%n", s.name, deadlineMs);
+            }
+        }
+        return results;
     }
 
     /**
      * Rolling update:
      * - windowSize: how many services can be restarted concurrently (Semaphore permits)
-     * - batchSize: we group services into batches of this size to coordinate phases across the batch using CyclicBarrier
+     * - batchSize: we group services into batches of this size to coordinate phases across the batch using a PhaseCoordinator
+     * Each batch runs in a child of {@code scope}. A failing service leaves the batch's phases
+     * instead of breaking them, and one that takes more than BATCH_PHASE_TIMEOUT_MS longer than
+     * the first to finish a phase is evicted; the rest of the batch completes, then the failures
+     * fail the scope, later batches are skipped and the scope's report is thrown.
      */
-    static void performRollingUpdate(ExecutorService executor,
+    static void performRollingUpdate(TaskScope scope,
+                                     HealthCheckEngine healthChecks,
                                      Map<String, Service> services,
                                      int windowSize,
                                      int batchSize) throws InterruptedException {
         List<Service> serviceList = new ArrayList<>(services.values());
 
-        // We'll just update services in the current order (could be topo sort if you want dependency-aware rolling)
+        // Updates services in map order; see RollingUpdater for the dependency-aware version
         List<List<Service>> batches = new ArrayList<>();
         for (int i = 0; i < serviceList.size(); i += batchSize) {
             batches.add(serviceList.subList(i, Math.min(i + batchSize, serviceList.size())));
@@ -190,58 +328,65 @@ public class MicroserviceOrchestrator {
             // Semaphore limits concurrent restarts across the entire batch (window)
             Semaphore window = new Semaphore(windowSize);
 
-            // Barrier to sync: prepare -> restart -> post-check
-            CyclicBarrier barrier = new CyclicBarrier(batch.size(),
-                    () -> System.out.println(">>> batch barrier action: phase complete"));
-
-            // For each service in batch, submit a restart task
-            List<Future<?>> futures = new ArrayList<>();
-            for (Service s : batch) {
-                futures.add(executor.submit(() -> {
-                    try {
-                        // PHASE 1: prepare (e.g., drain connections, take out of LB)
-                        System.out.printf("[%s] PREPARE for restart (drain)...%n", s.name);
-                        Thread.sleep(200 + (int)(Math.random() * 300));
-                        barrier.await(); // wait for other batch services to finish prepare
-
-                        // PHASE 2: restart (limited by window semaphore)
-                        window.acquire();
+            // Phases to sync: prepare -> restart -> post-check
+            Map<String, Throwable> failures = new ConcurrentHashMap<>();
+            List<CompletableFuture<Object>> tasks = new ArrayList<>();
+
+            // For each service in batch, fork a restart task; failures are collected until the batch is done
+            try (TaskScope batchScope = scope.child("batch " + (batchIndex + 1), scope.remainingMs());
+                 PhaseCoordinator phases = new PhaseCoordinator("batch-" + (batchIndex + 1), 64, BATCH_PHASE_TIMEOUT_MS,
+                         phase -> System.out.println(">>> batch barrier action: phase complete"))) {
+                for (Service s : batch) {
+                    PhaseCoordinator.Member barrier = phases.join(s.name);
+                    tasks.add(batchScope.fork(s.name, () -> {
                         try {
-                            System.out.printf("[%s] performing restart (acquired window permit)%n", s.name);
-                            s.restart();
-                        } finally {
-                            window.release();
-                            System.out.printf("[%s] released window permit%n", s.name);
-                        }
-                        barrier.await(); // wait for others to finish restart
-
-                        // PHASE 3: post-check (run health check)
-                        System.out.printf("[%s] POST-CHECK starting%n", s.name);
-                        Future<Boolean> hc = Executors.newSingleThreadExecutor().submit(s.healthCheckTask());
-                        try {
-                            boolean ok = hc.get(700, TimeUnit.MILLISECONDS);
-                            System.out.printf("[%s] POST-CHECK -> %s%n", s.name, ok ? "OK" : "FAIL");
-                        } catch (TimeoutException te) {
-                            System.out.printf("[%s] POST-CHECK -> TIMEOUT%n", s.name);
-                            hc.cancel(true);
-                        } catch (ExecutionException e) {
-                            throw new RuntimeException(e);
-                        } finally {
+                            // PHASE 1: prepare (e.g., drain connections, take out of LB)
+                            System.out.printf("[%s] PREPARE for restart (drain)...%n", s.name);
+                            Thread.sleep(200 + (int)(Math.random() * 300));
+                            barrier.arriveAndAwait(); // wait for other batch services to finish prepare
+
+                            // PHASE 2: restart (limited by window semaphore)
+                            window.acquire();
+                            try {
+                                System.out.printf("[%s] performing restart (acquired window permit)%n", s.name);
+                                s.restart();
+                                healthChecks.invalidate(s.name); // post-check probes the restarted instance
+                            } finally {
+                                window.release();
+                                System.out.printf("[%s] released window permit%n", s.name);
+                            }
+                            barrier.arriveAndAwait(); // wait for others to finish restart
+
+                            // PHASE 3: post-check (run health check, one retry for a transient failure)
+                            System.out.printf("[%s] POST-CHECK starting%n", s.name);
+                            HealthCheckEngine.Result hc = healthChecks.check(s, Math.min(700, batchScope.remainingMs())).get();
+                            if (hc.status != HealthCheckEngine.Status.OK) {
+                                System.out.printf("[%s] POST-CHECK -> %s, retrying%n", s.name, hc.status);
+                                hc = healthChecks.check(s, Math.min(700, batchScope.remainingMs())).get();
+                            }
+                            System.out.printf("[%s] POST-CHECK -> %s%n", s.name, hc.status);
+                            if (hc.status != HealthCheckEngine.Status.OK) {
+                                throw new IllegalStateException("post-check " + hc.status + " after 2 attempts");
+                            }
                             // small delay to simulate reattaching to LB
                             Thread.sleep(100);
+                            barrier.arriveAndAwait(); // finish post-check phase and let batch proceed (barrier action prints)
+                            return null;
+                        } catch (IllegalStateException | ExecutionException e) {
+                            // failed or evicted (EvictedException): out of the batch, which goes on without this service
+                            System.out.printf("[%s] left the batch: %s%n", s.name, e.getMessage());
+                            failures.put(s.name, e);
+                            return null;
+                        } finally {
+                            barrier.leave();
                         }
-                        barrier.await(); // finish post-check phase and let batch proceed (barrier action prints)
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    } catch (BrokenBarrierException e) {
-                        System.out.printf("[%s] barrier broken: %s%n", s.name, e.getMessage());
-                    }
-                }));
-            }
+                    }));
+                }
 
-            // Wait for all futures in this batch to finish
-            for (Future<?> f : futures) {
-                try { f.get(); } catch (Exception ignored) { }
+                // Let the whole batch finish, then fail it with whatever went wrong; the report is rethrown here
+                TaskScope.await(CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null));
+                failures.forEach(batchScope::fail);
+                batchScope.join();
             }
             System.out.printf("--- Batch %d completed%n", batchIndex + 1);
         }
@@ -1,22 +1,51 @@
 package multithreading;
 
+import multithreading.download.AimdController;
+import multithreading.download.DownloadMetrics;
+import multithreading.download.MetricsSink;
+import multithreading.download.RangeClient;
+import multithreading.download.SegmentedDownloader;
+import multithreading.download.StubServer;
+import multithreading.log.AsyncLogger;
+import multithreading.log.LogTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public class MultiDownloadToy {
 
+    // nominal size of one simulated chunk, so the toy reports bytes and throughput like the real mode
+    static final int CHUNK_BYTES = 256 * 1024;
+    // simulated per-chunk failure rate (-Ddownload.failRate) and attempts per chunk
+    static final double FAIL_RATE = Double.parseDouble(System.getProperty("download.failRate", "0.1"));
+    static final int MAX_ATTEMPTS = 4;
+
+    private static final LogTemplate GAVE_UP = LogTemplate.of("{} : {} chunk {} failed {} times, giving up");
+    private static final LogTemplate INTERRUPTED = LogTemplate.of("{} : interrupted while downloading {} ({}/{} chunks done)");
+
     static class DownloadTask implements Runnable{
 
         private final String fileName;
         private final int chunks;
-        private final AtomicInteger completedChunks;
+        private final DownloadMetrics.FileMetrics metrics;
 
-        public DownloadTask(String fileName, int chunks, AtomicInteger completedChunks) {
+        public DownloadTask(String fileName, int chunks, DownloadMetrics.FileMetrics metrics) {
             this.fileName = fileName;
             this.chunks = chunks;
-            this.completedChunks = completedChunks;
+            this.metrics = metrics;
         }
 
         @Override
@@ -26,54 +55,136 @@ public class MultiDownloadToy {
             Random rnd = new Random();
 
             for(int i = 1;i<=chunks;i++) {
-                try{
-                    Thread.sleep(100 + rnd.nextInt(200));
-                }catch (InterruptedException e){
-                    System.out.printf("%s : interrupted while downloading %s%n", name, fileName);
-                    Thread.currentThread().interrupt();
-                    return;
+                long begin = System.nanoTime();
+                // a failed chunk is retried on its own with exponential backoff; the file only
+                // fails if one chunk fails MAX_ATTEMPTS times in a row
+                for (int attempt = 1; ; attempt++) {
+                    try{
+                        Thread.sleep(100 + rnd.nextInt(200));
+                        if (rnd.nextDouble() >= FAIL_RATE) break;
+                        if (attempt == MAX_ATTEMPTS) {
+                            AsyncLogger.console().log(GAVE_UP, name, fileName, i, attempt);
+                            throw new IllegalStateException(fileName + " chunk " + i + " failed " + attempt + " times");
+                        }
+                        Thread.sleep(rnd.nextInt(50 << attempt)); // full jitter over 100, 200, 400ms
+                    }catch (InterruptedException e){
+                        AsyncLogger.console().log(INTERRUPTED, name, fileName, i - 1, chunks);
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
                 }
 
-                completedChunks.incrementAndGet();
-                System.out.printf("%s: %s chunk %d/%d done %n", name, fileName, i, chunks);
-
+                // striped counters + histogram only; completion and progress lines go through the sink
+                metrics.chunkDone(CHUNK_BYTES, System.nanoTime() - begin);
             }
-            System.out.printf("%s : completed %s%n", name, fileName);
         }
     }
 
-    public static void main(String[] args)  throws InterruptedException{
+    public static void main(String[] args)  throws InterruptedException, IOException{
 
-        AtomicInteger completedChunks = new AtomicInteger(0);
+        if (args.length > 0 && args[0].equals("real")) {
+            int corrupt = runSegmented(args.length > 1 && args[1].equals("flaky"));
+            if (corrupt > 0) {
+                System.out.printf("%d files failed verification%n", corrupt);
+                System.exit(1);
+            }
+            return;
+        }
+
+        DownloadMetrics metrics = new DownloadMetrics();
         String[] files = {"a.zip", "b.zip", "c.zip"};
-        List<Thread> workers = new ArrayList<>();
+        int chunks = 5;
+        List<Future<?>> workers = new ArrayList<>();
+
+        // periodic snapshots replace the polling reporter thread; the async sink keeps console
+        // output off the worker and reporter threads
+        metrics.startReporting(MetricsSink.async(MetricsSink.console(), 256), 300);
+
+        // platform mode keeps one thread per file; -Dexec.mode=virtual gives each file a virtual thread
+        ExecutionMode mode = ExecutionMode.fromSystemProperty();
+        ExecutorService executor = mode.newExecutor("dl", files.length);
+        for (String file : files) {
+            workers.add(executor.submit(new DownloadTask(file, chunks,
+                    metrics.register(file, (long) chunks * CHUNK_BYTES, chunks))));
+        }
 
-        for (int i = 0;i< files.length;i++) {
-            Thread t = new Thread(new DownloadTask(files[i], 5, completedChunks), "dl-" + (i+1));
-            workers.add(t);
-            t.start();
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < workers.size(); i++) {
+            try {
+                workers.get(i).get();
+            } catch (ExecutionException e) {
+                failed.add(files[i]);
+                System.out.printf("download failed: %s%n", e.getCause());
+            }
+        }
+        metrics.stopReporting();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        AsyncLogger.console().flush();
+        if (!failed.isEmpty()) {
+            System.out.printf("%d of %d downloads failed: %s%n", failed.size(), files.length, failed);
+            System.exit(1);
         }
+        System.out.println("All downloads finished");
+    }
 
-        Thread reporter = new Thread(()-> {
-            try{
-                while (true) {
-                    System.out.printf("Total Completed Chunks : %d%n", completedChunks.get());
-                    Thread.sleep(300);
-                    boolean allDead = workers.stream().allMatch(w -> !w.isAlive());
-                    if(allDead) break;
+    // "real" mode: range requests against a local stub server, chunks mapped straight into the
+    // output files, idle workers stealing chunks of the slow file (see multithreading.download).
+    // "real flaky": every connection is throttled, the server fails, truncates and corrupts some
+    // responses and answers 503 above 8 connections; an AIMD controller finds the concurrency
+    // returns the number of files that failed verification; the temp directory is deleted either way
+    static int runSegmented(boolean flaky) throws IOException, InterruptedException {
+        int workers = flaky ? 16 : 4;
+        try (StubServer server = new StubServer()) {
+            Map<String, URI> targets = new LinkedHashMap<>();
+            long perConnection = flaky ? 2 << 20 : 0;
+            targets.put("a.zip", server.addFile("a.zip", 8 << 20, perConnection));
+            targets.put("b.zip", server.addFile("b.zip", 16 << 20, perConnection));
+            targets.put("c.zip", server.addFile("c.zip", 32 << 20, 4 << 20)); // slow origin: 4 MB/s per connection
+            if (flaky) server.setFaults(new StubServer.Faults(0.03, 0.03, 0.03, 8));
+
+            Path dir = Files.createTempDirectory("segmented-dl");
+            ExecutorService executor = ExecutionMode.fromSystemProperty().newExecutor("seg", workers);
+            DownloadMetrics metrics = new DownloadMetrics();
+            AimdController controller = flaky ? new AimdController(workers) : AimdController.fixed(workers);
+            SegmentedDownloader downloader = new SegmentedDownloader(new RangeClient(), executor, 1 << 20, metrics,
+                    controller, 6);
+
+            int corrupt = 0;
+            try {
+                metrics.startReporting(MetricsSink.async(MetricsSink.console(), 256), 500);
+                long begin = System.nanoTime();
+                List<SegmentedDownloader.Result> results;
+                try {
+                    results = downloader.download(targets, dir);
+                } finally {
+                    metrics.stopReporting();
+                    executor.shutdown();
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+                long totalBytes = 0;
+                for (SegmentedDownloader.Result r : results) {
+                    boolean ok = StubServer.verify(r.name, r.size, dir.resolve(r.name));
+                    System.out.printf("%s -> %s%n", r, ok ? "verified" : "CORRUPT");
+                    if (!ok) corrupt++;
+                    totalBytes += r.size;
+                }
+                System.out.printf("All downloads finished: %d MB in %dms (%.1f MB/s)%n",
+                        totalBytes >> 20, elapsedMs, (totalBytes / 1048576.0) / (elapsedMs / 1000.0));
+                System.out.printf("concurrency: %s%nserver faults: %s%n", controller, server.faultStats());
+            } finally {
+                deleteRecursively(dir);
             }
-            System.out.println("Reporter Exiting");
-        }, "reporter");
-
-        reporter.setDaemon(true);
-        reporter.start();
+            return corrupt;
+        }
+    }
 
-        for(Thread w : workers) {
-            w.join();
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
         }
-        System.out.println("All downloads finished");
     }
 }
@@ -0,0 +1,62 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+import multithreading.cluster.ServiceGraph;
+import multithreading.cluster.SocketTransport;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * One orchestrator process of a multi-process startup. Every agent rebuilds the same generated
+ * graph, starts the services it owns ({@link ServiceGraph#owner}) with a {@link StartupScheduler}
+ * and learns about everyone else's through a {@link SocketTransport} to the coordinator, so its
+ * services start as soon as their dependencies are READY, in whichever process they ran.
+ * Exits 0 once the whole graph is READY, 1 if any agent failed. See
+ * {@link multithreading.cluster.ClusterLauncher} for the launcher.
+ *
+ * Usage: OrchestratorAgent port agentId agents services layers maxDeps seed threads
+ */
+public class OrchestratorAgent {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 8) {
+            System.err.println("Usage: OrchestratorAgent port agentId agents services layers maxDeps seed threads");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        int agent = Integer.parseInt(args[1]);
+        int agents = Integer.parseInt(args[2]);
+        ServiceGraph graph = ServiceGraph.generate(Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+                Integer.parseInt(args[5]), Long.parseLong(args[6]));
+        int threads = Integer.parseInt(args[7]);
+
+        Map<String, Service> services = MicroserviceOrchestrator.buildServices(graph.toMap());
+        for (Service s : services.values()) {
+            s.verbose = false;
+            s.fixedStartupMs = graph.startupMs(graph.indexOf(s.name));
+        }
+        int owned = 0;
+        for (int i = 0; i < graph.size(); i++) {
+            if (graph.owner(i, agents) == agent) owned++;
+        }
+
+        String label = "agent-" + agent;
+        ExecutorService executor = ExecutionMode.fromSystemProperty().newExecutor(label, threads);
+        boolean ok = false;
+        try (SocketTransport transport = SocketTransport.connect(port, agent, agents, graph);
+             TaskScope scope = TaskScope.open(label, executor, 120_000)) {
+            StartupScheduler scheduler = new StartupScheduler(scope, services, Map.of(), Integer.MAX_VALUE,
+                    transport, name -> graph.owner(graph.indexOf(name), agents) == agent);
+            StartupScheduler.Report report = TaskScope.await(scheduler.start());
+            System.out.printf("[%s] started %d of %d services; graph READY after %dms%n",
+                    label, owned, graph.size(), report.wallMs);
+            ok = true;
+        } catch (RuntimeException e) {
+            System.out.printf("[%s] startup failed: %s%n", label, e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,215 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * What one orchestrator run learned about the fleet, kept for the next run: the dependency
+ * graph, each service's last health-check result and its measured startup/restart durations.
+ *
+ * Layout: magic, version, saved-at (epoch ms), service count, then per service in topological
+ * order: name (u16 length + UTF-8), startup ms, restart ms, health status (-1 = never checked),
+ * checked-at (epoch ms), dependency count and the dependencies as indexes of earlier entries;
+ * a CRC32 of everything before it closes the file. Dependencies pointing backwards make a cycle
+ * unrepresentable, and the snapshot is written to a temp file and moved into place, so a crash
+ * mid-write leaves the previous snapshot intact.
+ */
+final class OrchestratorSnapshot {
+
+    private static final int MAGIC = 0x4F524348; // "ORCH"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 8 + 4;
+
+    static final class Entry {
+        final String name;
+        final List<String> dependencies;
+        final long startupMs;
+        final long restartMs;
+        final HealthCheckEngine.Status health; // null: never checked
+        final long checkedAtEpochMs;
+
+        Entry(String name, List<String> dependencies, long startupMs, long restartMs,
+              HealthCheckEngine.Status health, long checkedAtEpochMs) {
+            this.name = name;
+            this.dependencies = dependencies;
+            this.startupMs = startupMs;
+            this.restartMs = restartMs;
+            this.health = health;
+            this.checkedAtEpochMs = checkedAtEpochMs;
+        }
+    }
+
+    final long savedAtEpochMs;
+    final Map<String, Entry> entries; // topological order
+
+    private OrchestratorSnapshot(long savedAtEpochMs, Map<String, Entry> entries) {
+        this.savedAtEpochMs = savedAtEpochMs;
+        this.entries = entries;
+    }
+
+    /** Snapshot of {@code services} now, with the latest result per service from {@code health}. */
+    static OrchestratorSnapshot capture(Map<String, Service> services, Collection<HealthCheckEngine.Result> health) {
+        long nowMs = System.currentTimeMillis();
+        long nowNanos = System.nanoTime();
+        Map<String, HealthCheckEngine.Result> latest = new HashMap<>();
+        for (HealthCheckEngine.Result r : health) {
+            latest.merge(r.service, r, (a, b) -> b.checkedAtNanos - a.checkedAtNanos > 0 ? b : a);
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (String name : StartupScheduler.topologicalOrder(services)) {
+            Service s = services.get(name);
+            HealthCheckEngine.Result r = latest.get(name);
+            entries.put(name, new Entry(name, List.copyOf(s.dependencies), s.lastStartupMs, s.lastRestartMs,
+                    r == null ? null : r.status,
+                    r == null ? 0 : nowMs - TimeUnit.NANOSECONDS.toMillis(nowNanos - r.checkedAtNanos)));
+        }
+        return new OrchestratorSnapshot(nowMs, entries);
+    }
+
+    void write(Path path) throws IOException {
+        Map<String, Integer> index = new HashMap<>();
+        List<byte[]> names = new ArrayList<>(entries.size());
+        int size = HEADER_BYTES + 4;
+        for (Entry e : entries.values()) {
+            byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+            if (name.length > 0xFFFF) throw new IOException("service name too long: " + e.name);
+            index.put(e.name, names.size());
+            names.add(name);
+            size += 2 + name.length + 4 + 4 + 1 + 8 + 2 + 4 * e.dependencies.size();
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC).putShort(VERSION).putLong(savedAtEpochMs).putInt(entries.size());
+        int i = 0;
+        for (Entry e : entries.values()) {
+            byte[] name = names.get(i++);
+            buf.putShort((short) name.length).put(name)
+                    .putInt((int) Math.min(e.startupMs, Integer.MAX_VALUE))
+                    .putInt((int) Math.min(e.restartMs, Integer.MAX_VALUE))
+                    .put(e.health == null ? -1 : (byte) e.health.ordinal())
+                    .putLong(e.checkedAtEpochMs)
+                    .putShort((short) e.dependencies.size());
+            for (String dep : e.dependencies) {
+                buf.putInt(index.get(dep));
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue()).flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Reads a snapshot; throws IOException if the file is truncated, corrupt or of another version. */
+    static OrchestratorSnapshot read(Path path) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES + 4 || ch.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + ": not a snapshot (" + ch.size() + " bytes)");
+            }
+            buf = ByteBuffer.allocate((int) ch.size());
+            while (buf.hasRemaining() && ch.read(buf) > 0) { }
+        }
+        buf.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.limit() - 4);
+        if (buf.getInt(buf.limit() - 4) != (int) crc.getValue()) {
+            throw new IOException(path + ": checksum mismatch");
+        }
+        buf.limit(buf.limit() - 4);
+
+        try {
+            if (buf.getInt() != MAGIC) throw new IOException(path + ": not a snapshot");
+            short version = buf.getShort();
+            if (version != VERSION) throw new IOException(path + ": unsupported snapshot version " + version);
+            long savedAt = buf.getLong();
+            int count = buf.getInt();
+
+            HealthCheckEngine.Status[] statuses = HealthCheckEngine.Status.values();
+            List<String> names = new ArrayList<>(count);
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[Short.toUnsignedInt(buf.getShort())];
+                buf.get(name);
+                String n = new String(name, StandardCharsets.UTF_8);
+                long startupMs = buf.getInt();
+                long restartMs = buf.getInt();
+                byte health = buf.get();
+                long checkedAt = buf.getLong();
+                int depCount = Short.toUnsignedInt(buf.getShort());
+                List<String> deps = new ArrayList<>(depCount);
+                for (int d = 0; d < depCount; d++) {
+                    int dep = buf.getInt();
+                    if (dep < 0 || dep >= i) throw new IOException(path + ": " + n + " has a forward dependency");
+                    deps.add(names.get(dep));
+                }
+                if (health >= statuses.length) throw new IOException(path + ": " + n + " has unknown status " + health);
+                names.add(n);
+                entries.put(n, new Entry(n, deps, startupMs, restartMs, health < 0 ? null : statuses[health], checkedAt));
+            }
+            if (buf.hasRemaining()) throw new IOException(path + ": trailing bytes");
+            return new OrchestratorSnapshot(savedAt, entries);
+        } catch (BufferUnderflowException e) {
+            throw new IOException(path + ": truncated snapshot", e);
+        }
+    }
+
+    /** The dependency graph, ready for {@link MicroserviceOrchestrator#buildServices}. */
+    Map<String, List<String>> graph() {
+        Map<String, List<String>> deps = new LinkedHashMap<>();
+        for (Entry e : entries.values()) {
+            deps.put(e.name, e.dependencies);
+        }
+        return deps;
+    }
+
+    /** Measured startup durations of the services that started last time. */
+    Map<String, Long> startupMs() {
+        Map<String, Long> ms = new HashMap<>();
+        for (Entry e : entries.values()) {
+            if (e.startupMs > 0) ms.put(e.name, e.startupMs);
+        }
+        return ms;
+    }
+
+    /** Services whose last check was OK no more than {@code maxAgeMs} ago. */
+    List<String> recentlyHealthy(long maxAgeMs) {
+        long now = System.currentTimeMillis();
+        List<String> healthy = new ArrayList<>();
+        for (Entry e : entries.values()) {
+            if (e.health == HealthCheckEngine.Status.OK && now - e.checkedAtEpochMs <= maxAgeMs) healthy.add(e.name);
+        }
+        return healthy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[snapshot] %d services, %d recently healthy, saved %ds ago", entries.size(),
+                recentlyHealthy(Long.MAX_VALUE).size(), (System.currentTimeMillis() - savedAtEpochMs) / 1000);
+    }
+}
@@ -0,0 +1,101 @@
+package multithreading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Phase completion cost of a CyclicBarrier, a flat {@link PhaseCoordinator} (one Phaser for
+ * everyone) and a tiered one, for growing party counts; then what one straggler does to each.
+ *
+ * Usage: PhaseBenchmark [phases=200] [maxParties=2048] [fanOut=32]
+ *
+ * Every party is a platform thread that does nothing but arrive and wait, so the numbers are the
+ * barrier's own cost. In the straggler run one party stalls for 1s in phase 2 and the per-phase
+ * timeout is 100ms: the CyclicBarrier breaks for everyone, the coordinator evicts the straggler.
+ */
+public class PhaseBenchmark {
+
+    private interface Party {
+        void arriveAndAwait() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int phases = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int maxParties = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+        int fanOut = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+        System.out.printf("phases=%d fanOut=%d cores=%d%n%n", phases, fanOut, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-22s %7s %10s %12s%n", "barrier", "parties", "wall ms", "us/phase");
+        for (int parties = 16; parties <= maxParties; parties *= 4) {
+            CyclicBarrier barrier = new CyclicBarrier(parties);
+            print("CyclicBarrier", parties, phases, run(parties, phases, i -> barrier::await, -1));
+
+            try (PhaseCoordinator flat = new PhaseCoordinator("flat", Integer.MAX_VALUE, 0, phase -> { })) {
+                print("Phaser (flat)", parties, phases, run(parties, phases, i -> flat.join("p" + i)::arriveAndAwait, -1));
+            }
+            try (PhaseCoordinator tiered = new PhaseCoordinator("tiered", fanOut, 0, phase -> { })) {
+                print("Phaser (fan-out " + fanOut + ")", parties, phases,
+                        run(parties, phases, i -> tiered.join("p" + i)::arriveAndAwait, -1));
+            }
+        }
+
+        int parties = Math.min(256, maxParties);
+        System.out.printf("%nstraggler: %d parties, 10 phases, party 0 stalls 1s in phase 2, 100ms phase timeout%n", parties);
+        CyclicBarrier barrier = new CyclicBarrier(parties);
+        AtomicInteger finished = new AtomicInteger();
+        run(parties, 10, i -> () -> barrier.await(100, TimeUnit.MILLISECONDS), 0, finished);
+        System.out.printf("%-22s %d of %d parties finished all phases%n", "CyclicBarrier", finished.get(), parties);
+
+        try (PhaseCoordinator coordinator = new PhaseCoordinator("straggler", fanOut, 100, phase -> { })) {
+            finished.set(0);
+            run(parties, 10, i -> coordinator.join("p" + i)::arriveAndAwait, 0, finished);
+            System.out.printf("%-22s %d of %d parties finished all phases, evicted %s%n", "PhaseCoordinator",
+                    finished.get(), parties, coordinator.evicted());
+        }
+    }
+
+    private static long run(int parties, int phases, IntFunction<Party> join, int straggler)
+            throws InterruptedException {
+        return run(parties, phases, join, straggler, new AtomicInteger());
+    }
+
+    // returns wall time in nanos; party number straggler (or none if negative) stalls in phase 2
+    private static long run(int parties, int phases, IntFunction<Party> join, int straggler,
+                            AtomicInteger finished) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < parties; i++) {
+            Party party = join.apply(i);
+            boolean stalls = i == straggler;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int phase = 0; phase < phases; phase++) {
+                        if (stalls && phase == 2) Thread.sleep(1000);
+                        party.arriveAndAwait();
+                    }
+                    finished.incrementAndGet();
+                } catch (BrokenBarrierException | TimeoutException | PhaseCoordinator.EvictedException e) {
+                    // out of the run: the barrier broke, or this party was evicted
+                } catch (Exception e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "party-" + i));
+        }
+        long begin = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    private static void print(String name, int parties, int phases, long nanos) {
+        System.out.printf("%-22s %7d %10d %12.1f%n", name, parties, TimeUnit.NANOSECONDS.toMillis(nanos),
+                nanos / 1e3 / phases);
+    }
+}
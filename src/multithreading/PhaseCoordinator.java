@@ -0,0 +1,234 @@
+package multithreading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Reusable phase barrier over a tree of {@link Phaser}s, for parties that come and go.
+ *
+ * Unlike a CyclicBarrier, the set of parties is not fixed: a member can {@link #join} between
+ * (or during) phases and {@link Member#leave} at any time, and one that fails just leaves
+ * instead of breaking the barrier for everyone else. Members are spread over leaf phasers of at
+ * most {@code fanOut} parties under one root, so arrivals contend on their own leaf and a leaf
+ * forwards a single arrival to the root when all of its members are in: completing a phase with
+ * thousands of parties touches the root once per leaf, not once per party.
+ *
+ * With a phase timeout, the first arrival of a phase arms a timer on a {@link HashedTimerWheel};
+ * when it fires, every member that still has not arrived is evicted (deregistered on its
+ * behalf) and the phase completes for the rest. An evicted member finds out with an
+ * {@link EvictedException} when it finally arrives.
+ */
+final class PhaseCoordinator implements AutoCloseable {
+
+    static final class EvictedException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        final int phase;
+
+        EvictedException(String member, int phase) {
+            super(member + " was evicted from phase " + phase + " for arriving too late");
+            this.phase = phase;
+        }
+    }
+
+    // member states besides "next phase to arrive at"
+    private static final int LEFT = -1;
+    private static final int EVICTED = -2;
+
+    final class Member {
+        final String name;
+        private final Phaser leaf;
+        private final AtomicInteger leafSize;
+        private final AtomicInteger state;
+        private volatile int evictedAt = -1;
+
+        private Member(String name, Phaser leaf, AtomicInteger leafSize, int phase) {
+            this.name = name;
+            this.leaf = leaf;
+            this.leafSize = leafSize;
+            this.state = new AtomicInteger(phase);
+        }
+
+        /**
+         * Arrives at the current phase and waits for everyone else still in it. Returns the next
+         * phase, or a negative number once the coordinator is closed.
+         */
+        int arriveAndAwait() throws InterruptedException {
+            int phase = state.get();
+            if (phase == EVICTED) throw new EvictedException(name, evictedAt);
+            if (phase == LEFT) throw new IllegalStateException(name + " has left");
+            if (!state.compareAndSet(phase, phase + 1)) {
+                // the eviction timer got there first
+                throw new EvictedException(name, evictedAt);
+            }
+            arm(phase);
+            leaf.arrive();
+            return leaf.awaitAdvanceInterruptibly(phase);
+        }
+
+        /**
+         * Stops taking part; the current phase no longer waits for this member. Idempotent. A
+         * member that already arrived at a phase still open (its wait was interrupted) leaves
+         * once that phase completes, so its arrival is not counted twice.
+         */
+        void leave() {
+            int phase = state.get();
+            while (phase >= 0) {
+                if (state.compareAndSet(phase, LEFT)) {
+                    if (phase > 0) leaf.awaitAdvance(phase - 1);
+                    deregister(this);
+                    return;
+                }
+                phase = state.get();
+            }
+        }
+
+        boolean isEvicted() {
+            return state.get() == EVICTED;
+        }
+    }
+
+    private final String name;
+    private final int fanOut;
+    private final long phaseTimeoutMs;
+    private final IntConsumer onAdvance;
+    private final Phaser root;
+    private final HashedTimerWheel timer;
+    private final Set<Member> members = ConcurrentHashMap.newKeySet();
+
+    // guarded by this
+    private final List<Phaser> leaves = new ArrayList<>();
+    private final List<AtomicInteger> leafSizes = new ArrayList<>();
+
+    private final AtomicInteger armedPhase = new AtomicInteger(-1);
+    private volatile HashedTimerWheel.Timeout armed;
+    private final LongAdder evictions = new LongAdder();
+    private final List<String> evicted = new ArrayList<>();
+
+    /**
+     * @param fanOut         members per leaf phaser; larger trees add a level of indirection
+     *                       per arrival but spread the contention
+     * @param phaseTimeoutMs how long after a phase's first arrival stragglers are evicted; 0 waits forever
+     * @param onAdvance      runs once per completed phase (with its number) on the thread that
+     *                       completed it, like a CyclicBarrier's barrier action
+     */
+    PhaseCoordinator(String name, int fanOut, long phaseTimeoutMs, IntConsumer onAdvance) {
+        if (fanOut < 1) throw new IllegalArgumentException("fanOut must be >= 1");
+        this.name = name;
+        this.fanOut = fanOut;
+        this.phaseTimeoutMs = phaseTimeoutMs;
+        this.onAdvance = onAdvance;
+        this.root = new Phaser() {
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties) {
+                HashedTimerWheel.Timeout t = armed;
+                if (t != null) t.cancel();
+                // the last member leaving also advances the phase; that is not a completed phase
+                if (registeredParties > 0) PhaseCoordinator.this.onAdvance.accept(phase);
+                // stays alive with no members, so new ones can still join; close() ends it
+                return false;
+            }
+        };
+        this.timer = phaseTimeoutMs > 0 ? new HashedTimerWheel(name + "-phase-timer", 10, 64, Runnable::run) : null;
+    }
+
+    /**
+     * Adds a member; it takes part from the phase that is current when it joins, and is held to
+     * that phase's timer if one is already running.
+     */
+    Member join(String memberName) {
+        Phaser leaf;
+        AtomicInteger size;
+        synchronized (this) {
+            int i = 0;
+            while (i < leaves.size() && leafSizes.get(i).get() >= fanOut) i++;
+            if (i == leaves.size()) {
+                leaves.add(new Phaser(root));
+                leafSizes.add(new AtomicInteger());
+            }
+            leaf = leaves.get(i);
+            size = leafSizes.get(i);
+            size.incrementAndGet();
+        }
+        Member m = new Member(memberName, leaf, size, leaf.register());
+        members.add(m);
+        return m;
+    }
+
+    // the first arrival of a phase starts its straggler timer
+    private void arm(int phase) {
+        if (timer == null) return;
+        int current;
+        while ((current = armedPhase.get()) < phase) {
+            if (armedPhase.compareAndSet(current, phase)) {
+                armed = timer.schedule(() -> evictStragglers(phase), phaseTimeoutMs);
+                return;
+            }
+        }
+    }
+
+    // wheel thread; a member can only be evicted while its phase is still open, because the
+    // phase cannot complete without it
+    private void evictStragglers(int phase) {
+        if (root.getPhase() != phase) return;
+        for (Member m : members) {
+            if (m.state.get() != phase) continue;
+            m.evictedAt = phase;
+            if (m.state.compareAndSet(phase, EVICTED)) {
+                evictions.increment();
+                synchronized (evicted) {
+                    evicted.add(m.name);
+                }
+                deregister(m);
+            }
+        }
+    }
+
+    private void deregister(Member m) {
+        members.remove(m);
+        m.leafSize.decrementAndGet();
+        m.leaf.arriveAndDeregister();
+    }
+
+    /** Phase currently open (number of completed phases), negative once closed. */
+    int phase() {
+        return root.getPhase();
+    }
+
+    int members() {
+        return members.size();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    List<String> evicted() {
+        synchronized (evicted) {
+            return new ArrayList<>(evicted);
+        }
+    }
+
+    synchronized int leaves() {
+        return leaves.size();
+    }
+
+    /** Releases every waiting member (they see a negative phase) and stops the timer. */
+    @Override
+    public void close() {
+        root.forceTermination();
+        if (timer != null) timer.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%s] phase %d, %d members on %d leaves (fan-out %d), %d evicted",
+                name, Math.max(0, phase()), members(), leaves(), fanOut, evictions());
+    }
+}
@@ -0,0 +1,76 @@
+package multithreading;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports where virtual threads got pinned to their carrier.
+ *
+ * A virtual thread that blocks (sleep, IO, lock wait) while inside a {@code synchronized} block
+ * cannot unmount and holds its carrier thread hostage; {@code ReentrantLock} sections do not
+ * have this problem. The JDK publishes these cases as {@code jdk.VirtualThreadPinned} JFR
+ * events, which this class streams in-process and aggregates per blocking call site.
+ * On runtimes without virtual threads it simply records nothing.
+ */
+class PinningMonitor implements AutoCloseable {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final RecordingStream stream = new RecordingStream();
+    private final Map<String, LongAdder> pinsBySite = new ConcurrentHashMap<>();
+    private final LongAdder pinnedNanos = new LongAdder();
+
+    private PinningMonitor(Duration threshold) {
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    /** Starts a monitor in VIRTUAL mode; returns null (nothing to watch) in PLATFORM mode. */
+    static PinningMonitor startIfVirtual(ExecutionMode mode) {
+        return mode == ExecutionMode.VIRTUAL ? new PinningMonitor(Duration.ofMillis(1)) : null;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedNanos.add(event.getDuration().toNanos());
+        pinsBySite.computeIfAbsent(siteOf(event.getStackTrace()), k -> new LongAdder()).increment();
+    }
+
+    // First frame outside the JDK, i.e. the project code that blocked while holding a monitor
+    private static String siteOf(RecordedStackTrace trace) {
+        if (trace == null) return "<no stack>";
+        for (RecordedFrame frame : trace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return trace.getFrames().isEmpty() ? "<no frames>" : trace.getFrames().get(0).getMethod().getName();
+    }
+
+    String report() {
+        StringBuilder sb = new StringBuilder();
+        long total = pinsBySite.values().stream().mapToLong(LongAdder::sum).sum();
+        sb.append(String.format("[pinning] %d pinned episodes, %dms total carrier time lost",
+                total, pinnedNanos.sum() / 1_000_000));
+        pinsBySite.forEach((site, count) -> sb.append(String.format("%n[pinning]   %6d x %s", count.sum(), site)));
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        try {
+            // JDK 20+ flushes pending events on stop(); older runtimes just close
+            RecordingStream.class.getMethod("stop").invoke(stream);
+        } catch (ReflectiveOperationException ignored) {
+        }
+        stream.close();
+    }
+}
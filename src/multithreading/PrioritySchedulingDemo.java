@@ -0,0 +1,99 @@
+package multithreading;
+
+import multithreading.metrics.LatencyHistogram;
+import multithreading.pool.PriorityDeadlineExecutor;
+import multithreading.pool.PriorityDeadlineExecutor.Priority;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same saturating mix on a FIFO fixed pool and on a {@link PriorityDeadlineExecutor}.
+ *
+ * BULK tasks (20ms, no deadline) arrive faster than the pool can run them, so the queue keeps
+ * growing; URGENT (2ms, due within 50ms) and NORMAL (5ms, due within 500ms) tasks arrive at a
+ * steady rate on top. In FIFO order the urgent tasks queue behind the whole bulk backlog; with
+ * priorities and deadlines they go first, and bulk work still progresses through aging.
+ *
+ * agingMs is the overload trade-off: once bulk work has waited about 2 x agingMs it outranks
+ * fresh urgent work, so with a bulk backlog that deep the urgent tasks start to expire (try 100).
+ *
+ * Usage: PrioritySchedulingDemo [threads=4] [seconds=3] [agingMs=1000]
+ */
+public class PrioritySchedulingDemo {
+
+    private static final long[] WORK_MS = {2, 5, 20};
+    private static final long[] DEADLINE_MS = {50, 500, PriorityDeadlineExecutor.NO_DEADLINE};
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        long agingMs = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        System.out.printf("%d threads, %ds of load: bulk at %d/s against a capacity of %d/s, urgent 100/s, normal 50/s%n",
+                threads, seconds, threads * 1000 / 20 * 5 / 4, threads * 1000 / 20);
+
+        Map<Priority, LatencyHistogram> fifo = run(Executors.newFixedThreadPool(threads), threads, seconds, null);
+        print("fifo", fifo);
+
+        PriorityDeadlineExecutor executor = new PriorityDeadlineExecutor("edf", threads, agingMs);
+        Map<Priority, LatencyHistogram> edf = run(executor, threads, seconds, executor);
+        print("edf", edf);
+        System.out.println(executor.stats());
+    }
+
+    // every 10ms: one urgent task, every 2nd tick a normal one, and bulk at 125% of capacity
+    private static Map<Priority, LatencyHistogram> run(ExecutorService executor, int threads, int seconds,
+                                                       PriorityDeadlineExecutor prioritized) throws InterruptedException {
+        Map<Priority, LatencyHistogram> latencyMs = new EnumMap<>(Priority.class);
+        for (Priority p : Priority.values()) {
+            latencyMs.put(p, new LatencyHistogram());
+        }
+        double bulkPerTick = threads * 10 / 20.0 * 1.25;
+        double bulkDue = 0;
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int tick = 0; System.nanoTime() < end; tick++) {
+            submit(executor, prioritized, Priority.URGENT, latencyMs);
+            if (tick % 2 == 0) submit(executor, prioritized, Priority.NORMAL, latencyMs);
+            for (bulkDue += bulkPerTick; bulkDue >= 1; bulkDue--) {
+                submit(executor, prioritized, Priority.BULK, latencyMs);
+            }
+            Thread.sleep(10);
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return latencyMs;
+    }
+
+    private static void submit(ExecutorService executor, PriorityDeadlineExecutor prioritized, Priority priority,
+                               Map<Priority, LatencyHistogram> latencyMs) {
+        long submitted = System.nanoTime();
+        Runnable task = () -> {
+            try {
+                Thread.sleep(WORK_MS[priority.ordinal()]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            latencyMs.get(priority).record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted));
+        };
+        try {
+            if (prioritized != null) prioritized.execute(priority, DEADLINE_MS[priority.ordinal()], task);
+            else executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            System.out.println(priority + " task rejected: " + e.getMessage());
+        }
+    }
+
+    private static void print(String label, Map<Priority, LatencyHistogram> latencyMs) {
+        latencyMs.forEach((p, h) -> {
+            long deadline = DEADLINE_MS[p.ordinal()];
+            System.out.printf("[%s] %-6s ran %5d  latency p50=%5dms p99=%5dms max=%5dms%s%n", label, p, h.count(),
+                    h.percentile(50), h.percentile(99), h.max(),
+                    deadline == PriorityDeadlineExecutor.NO_DEADLINE ? "" : "  (due within " + deadline + "ms)");
+        });
+    }
+}
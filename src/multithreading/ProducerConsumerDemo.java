@@ -1,23 +1,73 @@
 package multithreading;
 
+import multithreading.buffer.Buffer;
+import multithreading.buffer.ShardedExchange;
+import multithreading.buffer.WaitStrategy;
+import multithreading.log.AsyncLogger;
+import multithreading.log.LogTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.*;
 
 public class ProducerConsumerDemo {
+
+    // end-of-stream marker; each consumer passes it on before leaving, since a batch take could
+    // otherwise swallow several markers and strand another consumer
+    private static final String DONE = "<done>";
+
+    // per-item lines go through the async logger, so producers and consumers never queue on
+    // the System.out lock
+    private static final LogTemplate PREPARED = LogTemplate.of("{} prepared {}");
+    private static final LogTemplate SERVED = LogTemplate.of("{} served {}");
+
+    /**
+     * Usage: ProducerConsumerDemo [buffer=abq] [producers=2] [consumers=2] [itemsPerProducer=10] [batch=1]
+     * buffer: abq, lbq, spsc (1 producer, 1 consumer), mpmc, mpmc-spin, mpmc-yield,
+     * sharded (a shard per producer, see ShardedExchange)
+     * ProducerConsumerDemo pipeline [orders] runs the multi-stage version, see KitchenPipelineDemo
+     */
     public static void main(String[] args) throws InterruptedException  {
 
-        BlockingQueue<String> buffer = new ArrayBlockingQueue<>(5);
+        String kind = args.length > 0 ? args[0] : "abq";
+        if (kind.equals("pipeline")) {
+            KitchenPipelineDemo.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        int producers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int consumers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int itemsPerProducer = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int batch = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        if (kind.startsWith("spsc") && (producers != 1 || consumers != 1)) {
+            throw new IllegalArgumentException("spsc needs exactly 1 producer and 1 consumer");
+        }
+
+        AsyncLogger log = AsyncLogger.console();
+
+        // item names are built once up front instead of "Dish-" + i per put
+        String[] dishes = new String[itemsPerProducer + 1];
+        for (int i = 1; i <= itemsPerProducer; i++) {
+            dishes[i] = "Dish-" + i;
+        }
+        if (kind.equals("sharded")) {
+            runSharded(producers, consumers, dishes, batch, log);
+            return;
+        }
+        Buffer<String> buffer = Buffer.create(kind, 5);
 
         Runnable producer = () -> {
             String threadName = Thread.currentThread().getName();
 
-            for (int i = 1; i <= 10 ; i++) {
+            for (int i = 1; i <= itemsPerProducer ; i++) {
                 try {
-                    String item = "Dish-"+i;
+                    String item = dishes[i];
                     buffer.put(item);
-                    System.out.println(threadName + " prepared " + item);
+                    log.log(PREPARED, threadName, item);
                     Thread.sleep(100);
                 }catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
+                    return;
                 }
             }
         };
@@ -26,13 +76,19 @@ public class ProducerConsumerDemo {
         Runnable consumer = () -> {
 
             String threadName = Thread.currentThread().getName();
-
-
+            List<String> items = new ArrayList<>(batch);
 
                 try {
-                    for(int i = 1;i<=10;i++) {
-                        String item = buffer.take();
-                        System.out.println(threadName + " served " + item);
+                    while (true) {
+                        items.clear();
+                        buffer.takeBatch(items, batch);
+                        for (String item : items) {
+                            if (item == DONE) { // identity check: DONE is a sentinel instance
+                                buffer.put(DONE);
+                                return;
+                            }
+                            log.log(SERVED, threadName, item);
+                        }
                         Thread.sleep(150);
                     }
                 }catch (InterruptedException e){
@@ -40,16 +96,95 @@ public class ProducerConsumerDemo {
                 }
         };
 
-        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ExecutorService executor = ExecutionMode.fromSystemProperty().newExecutor("kitchen", producers + consumers);
+
+        System.out.printf("Kitchen: %d producers, %d consumers, %s buffer, batch %d%n",
+                producers, consumers, buffer.name(), batch);
 
-        executor.submit(producer);
-        executor.submit(producer);
-        executor.submit(consumer);
-        executor.submit(consumer);
+        List<Future<?>> cooks = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            cooks.add(executor.submit(producer));
+        }
+        for (int i = 0; i < consumers; i++) {
+            executor.submit(consumer);
+        }
+
+        // once every producer is done, tell the consumers to stop
+        for (Future<?> cook : cooks) {
+            try {
+                cook.get();
+            } catch (ExecutionException e) {
+                System.out.println("producer failed: " + e.getCause());
+            }
+        }
+        buffer.put(DONE);
         executor.shutdown();
 
         executor.awaitTermination(1, TimeUnit.MINUTES);
 
+        log.flush();
         System.out.println("All dishes prepared and served.");
     }
+
+    // every cook puts into its own shard, keyed by cook number, so each cook's dishes are served
+    // in the order they were prepared even when an idle waiter steals from another waiter's shard
+    private static void runSharded(int producers, int consumers, String[] dishes, int batch, AsyncLogger log)
+            throws InterruptedException {
+        ShardedExchange<String> exchange = new ShardedExchange<>(producers, consumers, 5, WaitStrategy.PARK);
+        ExecutorService executor = ExecutionMode.fromSystemProperty().newExecutor("kitchen", producers + consumers);
+
+        System.out.printf("Kitchen: %d producers, %d consumers, %s, batch %d%n",
+                producers, consumers, exchange.name(), batch);
+
+        List<Future<?>> cooks = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int key = p;
+            cooks.add(executor.submit(() -> {
+                String threadName = Thread.currentThread().getName();
+                for (int i = 1; i < dishes.length; i++) {
+                    try {
+                        exchange.put(key, dishes[i]);
+                        log.log(PREPARED, threadName, dishes[i]);
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            ShardedExchange<String>.Consumer waiter = exchange.consumer(c);
+            executor.submit(() -> {
+                String threadName = Thread.currentThread().getName();
+                List<String> items = new ArrayList<>(batch);
+                try {
+                    while (true) {
+                        items.clear();
+                        if (waiter.takeBatch(items, batch) == 0) return;
+                        for (String item : items) {
+                            log.log(SERVED, threadName, item);
+                        }
+                        Thread.sleep(150);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        for (Future<?> cook : cooks) {
+            try {
+                cook.get();
+            } catch (ExecutionException e) {
+                System.out.println("producer failed: " + e.getCause());
+            }
+        }
+        exchange.close();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        log.flush();
+        System.out.printf("All dishes prepared and served (%d batches, %d stolen).%n", exchange.batches(), exchange.steals());
+    }
 }
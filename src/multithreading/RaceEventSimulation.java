@@ -0,0 +1,256 @@
+package multithreading;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The race from {@link RaceSimulation} in virtual time.
+ *
+ * One thread pops timestamped events from a priority queue and jumps the clock to each one, so
+ * a 2-second lap costs a heap operation instead of a sleeping thread. The synchronizers become
+ * bookkeeping: the CountDownLatch start is a single START event, the lap barrier is an arrival
+ * counter that schedules a BARRIER event when the last car arrives, and the pit Semaphore is a
+ * permit count plus a FIFO of waiting cars. Ties are broken by scheduling order, so a given
+ * {@link RacePlan} always produces the same result.
+ */
+class RaceEventSimulation {
+
+    private static final byte START = 0;
+    private static final byte LAP_END = 1;
+    private static final byte PIT_END = 2;
+    private static final byte BARRIER = 3;
+
+    private final RacePlan plan;
+
+    // binary min-heap on (time, seq) kept in parallel primitive arrays: at most one pending
+    // event per car plus the barrier, and no per-event allocation for 10^7 events
+    private long[] heapTime;
+    private long[] heapSeq;
+    private int[] heapCar;
+    private byte[] heapType;
+    private int size;
+    private long seq;
+
+    // pit semaphore: free permits and the FIFO of cars blocked in acquire()
+    private int freePits;
+    private final int[] pitQueue;
+    private int pitHead;
+    private int pitCount;
+
+    private int lap;
+    private long lapStart;
+    private int arrived;
+
+    RaceEventSimulation(RacePlan plan) {
+        this.plan = plan;
+        int capacity = plan.cars + 1;
+        heapTime = new long[capacity];
+        heapSeq = new long[capacity];
+        heapCar = new int[capacity];
+        heapType = new byte[capacity];
+        pitQueue = new int[plan.cars];
+    }
+
+    Result run() {
+        long begin = System.nanoTime();
+        long[] carMillis = new long[plan.cars];
+        int[] pitStops = new int[plan.cars];
+        long[] requestedAt = new long[plan.cars];
+        long pitWait = 0;
+        int maxPitQueue = 0;
+        long events = 0;
+        long raceEnd = 0;
+
+        freePits = plan.pitCapacity;
+        lap = 1;
+        schedule(0, START, 0);
+
+        while (size > 0) {
+            long now = heapTime[0];
+            int car = heapCar[0];
+            byte type = heapType[0];
+            pop();
+            events++;
+
+            switch (type) {
+                case START:
+                    startLap(now);
+                    break;
+                case LAP_END:
+                    if (plan.pits(car, lap)) {
+                        pitStops[car]++;
+                        if (freePits > 0) {
+                            freePits--;
+                            schedule(now + plan.pitMillis(car, lap), PIT_END, car);
+                        } else {
+                            requestedAt[car] = now;
+                            pitQueue[(pitHead + pitCount++) % pitQueue.length] = car;
+                            maxPitQueue = Math.max(maxPitQueue, pitCount);
+                        }
+                    } else {
+                        arrive(car, now, carMillis);
+                    }
+                    break;
+                case PIT_END:
+                    // release(): the permit passes straight to the longest waiter, if any
+                    if (pitCount > 0) {
+                        int next = pitQueue[pitHead];
+                        pitHead = (pitHead + 1) % pitQueue.length;
+                        pitCount--;
+                        pitWait += now - requestedAt[next];
+                        schedule(now + plan.pitMillis(next, lap), PIT_END, next);
+                    } else {
+                        freePits++;
+                    }
+                    arrive(car, now, carMillis);
+                    break;
+                case BARRIER:
+                    if (++lap > plan.laps) {
+                        raceEnd = now;
+                    } else {
+                        startLap(now);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("unknown event type " + type);
+            }
+        }
+
+        long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        return new Result("simulated", plan, raceEnd, carMillis, pitStops, pitWait, maxPitQueue, events, wallMs);
+    }
+
+    private void startLap(long now) {
+        lapStart = now;
+        for (int car = 0; car < plan.cars; car++) {
+            schedule(now + plan.lapMillis(car, lap), LAP_END, car);
+        }
+    }
+
+    // CyclicBarrier.await(): the last arrival trips the barrier for everyone at the same instant
+    private void arrive(int car, long now, long[] carMillis) {
+        carMillis[car] += now - lapStart;
+        if (++arrived == plan.cars) {
+            arrived = 0;
+            schedule(now, BARRIER, 0);
+        }
+    }
+
+    private void schedule(long time, byte type, int car) {
+        int i = size++;
+        long s = seq++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(time, s, parent)) break;
+            move(parent, i);
+            i = parent;
+        }
+        set(i, time, s, car, type);
+    }
+
+    private void pop() {
+        int last = --size;
+        if (last == 0) return;
+        long time = heapTime[last];
+        long s = heapSeq[last];
+        int car = heapCar[last];
+        byte type = heapType[last];
+        int i = 0;
+        int half = last >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < last && before(heapTime[right], heapSeq[right], child)) child = right;
+            if (!before(heapTime[child], heapSeq[child], time, s)) break;
+            move(child, i);
+            i = child;
+        }
+        set(i, time, s, car, type);
+    }
+
+    private boolean before(long time, long s, int slot) {
+        return before(time, s, heapTime[slot], heapSeq[slot]);
+    }
+
+    private static boolean before(long time, long s, long otherTime, long otherSeq) {
+        return time < otherTime || (time == otherTime && s < otherSeq);
+    }
+
+    private void move(int from, int to) {
+        set(to, heapTime[from], heapSeq[from], heapCar[from], heapType[from]);
+    }
+
+    private void set(int slot, long time, long s, int car, byte type) {
+        heapTime[slot] = time;
+        heapSeq[slot] = s;
+        heapCar[slot] = car;
+        heapType[slot] = type;
+    }
+
+    /** Outcome of one race, produced by either the simulation or the threaded run (all times in race ms). */
+    static final class Result {
+        final String mode;
+        final RacePlan plan;
+        final long raceMillis;
+        final long[] carMillis;
+        final int[] pitStops;
+        final long pitWaitMillis;
+        final int maxPitQueue;
+        final long events;
+        final long wallMillis;
+
+        Result(String mode, RacePlan plan, long raceMillis, long[] carMillis, int[] pitStops,
+               long pitWaitMillis, int maxPitQueue, long events, long wallMillis) {
+            this.mode = mode;
+            this.plan = plan;
+            this.raceMillis = raceMillis;
+            this.carMillis = carMillis;
+            this.pitStops = pitStops;
+            this.pitWaitMillis = pitWaitMillis;
+            this.maxPitQueue = maxPitQueue;
+            this.events = events;
+            this.wallMillis = wallMillis;
+        }
+
+        /** Indices of the {@code n} cars with the lowest total track + pit time. */
+        int[] podium(int n) {
+            int[] best = new int[Math.min(n, carMillis.length)];
+            int filled = 0;
+            for (int car = 0; car < carMillis.length; car++) {
+                int i = filled < best.length ? filled++ : best.length;
+                while (i > 0 && carMillis[car] < carMillis[best[i - 1]]) {
+                    if (i < best.length) best[i] = best[i - 1];
+                    i--;
+                }
+                if (i < best.length) best[i] = car;
+            }
+            return best;
+        }
+
+        long totalPitStops() {
+            long total = 0;
+            for (int stops : pitStops) total += stops;
+            return total;
+        }
+
+        // order-sensitive fingerprint of the whole outcome, for comparing two runs of the same seed
+        long checksum() {
+            long h = raceMillis;
+            for (int car = 0; car < carMillis.length; car++) {
+                h = h * 31 + carMillis[car];
+                h = h * 31 + pitStops[car];
+            }
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder podium = new StringBuilder();
+            for (int car : podium(3)) {
+                podium.append(String.format(" Car-%d (%.1fs)", car + 1, carMillis[car] / 1000.0));
+            }
+            return String.format("[%s] %s%n[%s] race time %.1fs, pit stops %d, pit wait %.1fs, max pit queue %d, events %d, wall %dms%n[%s] podium:%s%n[%s] checksum %016x",
+                    mode, plan, mode, raceMillis / 1000.0, totalPitStops(), pitWaitMillis / 1000.0, maxPitQueue, events, wallMillis,
+                    mode, podium, mode, checksum());
+        }
+    }
+}
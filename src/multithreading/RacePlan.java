@@ -0,0 +1,48 @@
+package multithreading;
+
+/**
+ * Lap and pit timings for one race. Every value is a pure function of (seed, car, lap), so the
+ * threaded race and the event simulation drive exactly the same cars, and a simulation can ask
+ * for car 73412's lap 58 without generating everything before it.
+ */
+final class RacePlan {
+
+    final long seed;
+    final int cars;
+    final int laps;
+    final int pitCapacity;
+
+    RacePlan(long seed, int cars, int laps, int pitCapacity) {
+        this.seed = seed;
+        this.cars = cars;
+        this.laps = laps;
+        this.pitCapacity = pitCapacity;
+    }
+
+    // same ranges as Car.driveLap / Car.pitStop: 1-3s on track, 50% pit chance, 0.5-2s in the pit
+    int lapMillis(int car, int lap) {
+        return 1000 + (int) (unit(car, lap, 0) * 2000);
+    }
+
+    boolean pits(int car, int lap) {
+        return unit(car, lap, 1) < 0.5;
+    }
+
+    int pitMillis(int car, int lap) {
+        return 500 + (int) (unit(car, lap, 2) * 1500);
+    }
+
+    // splitmix64 finalizer over the coordinates -> uniform double in [0, 1)
+    private double unit(int car, int lap, int salt) {
+        long x = seed + car * 0x9E3779B97F4A7C15L + lap * 0xC2B2AE3D27D4EB4FL + salt * 0x165667B19E3779F9L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        x ^= x >>> 31;
+        return (x >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("seed=%d cars=%d laps=%d pitCapacity=%d", seed, cars, laps, pitCapacity);
+    }
+}
@@ -1,47 +1,144 @@
 package multithreading;
 
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Semaphore;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Usage: RaceSimulation [threaded|sim|check] [cars] [laps] [pitCapacity] [seed]
+ *
+ * threaded (default) runs one platform thread per car with real sleeps; sim replays the same
+ * {@link RacePlan} in virtual time (100k cars x 100 laps by default); check runs a small race
+ * both ways (threaded at 10x speed) and compares the outcomes.
+ *
+ * -Drace.lapTimeoutMs=N (threaded) evicts a car from the race when it finishes a lap more than
+ * N ms after the first car did, instead of holding the whole field at the lap barrier.
+ */
 public class RaceSimulation {
 
     public static void main(String[] args) throws InterruptedException{
 
-        int carCount = 5;
-        int laps = 3;
+        String mode = args.length > 0 ? args[0] : "threaded";
+        boolean sim = mode.equals("sim");
+        int carCount = args.length > 1 ? Integer.parseInt(args[1]) : sim ? 100_000 : 5;
+        int laps = args.length > 2 ? Integer.parseInt(args[2]) : sim ? 100 : 3;
+        int pitCapacity = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        RacePlan plan = new RacePlan(seed, carCount, laps, pitCapacity);
+
+        switch (mode) {
+            case "sim":
+                System.out.println(new RaceEventSimulation(plan).run());
+                break;
+            case "check":
+                crossCheck(plan);
+                break;
+            default:
+                System.out.println(runThreaded(plan, 1.0));
+        }
+    }
 
+    /**
+     * The original race: one thread per car, latch start, barrier per lap, semaphore pit lane.
+     * {@code scale} shrinks every sleep (0.1 = ten times faster); times are reported in race ms.
+     * The lap barrier is a {@link PhaseCoordinator}: a car that crashes leaves the race instead
+     * of breaking the barrier for the rest of the field.
+     */
+    static RaceEventSimulation.Result runThreaded(RacePlan plan, double scale) throws InterruptedException {
         CountDownLatch raceStart = new CountDownLatch(1);
-        CyclicBarrier lapBarrier = new CyclicBarrier(carCount, () -> System.out.println("\n🏁 All cars completed lap. Starting next lap!\n"));
+        PhaseCoordinator lapBarrier = new PhaseCoordinator("laps", 64, Long.getLong("race.lapTimeoutMs", 0),
+                lap -> System.out.println("\n🏁 All cars completed lap. Starting next lap!\n"));
 
-        Semaphore pitStop = new Semaphore(3);
+        Semaphore pitStop = new Semaphore(plan.pitCapacity);
+        Telemetry telemetry = new Telemetry(plan, scale);
         System.out.println("Race setup complete. Cars getting ready...");
 
-        for(int i=1;i<=carCount;i++) {
-            new Thread(new Car("Car-" + i, raceStart, lapBarrier, pitStop, laps)).start();
+        for(int i=1;i<=plan.cars;i++) {
+            new Thread(new Car("Car-" + i, i - 1, plan, raceStart, lapBarrier.join("Car-" + i), pitStop, telemetry)).start();
         }
 
-        Thread.sleep(2000);
+        Thread.sleep((long) (2000 * scale));
         System.out.println("\n📣 All cars ready! Race starting in 3...2...1...\n");
+        long begin = System.nanoTime();
         raceStart.countDown();
+        telemetry.finished.await();
+        long wallNanos = System.nanoTime() - begin;
+        lapBarrier.close();
+        if (lapBarrier.evictions() > 0) System.out.println("DNF (evicted at a lap barrier): " + lapBarrier.evicted());
+
+        long[] carMillis = new long[plan.cars];
+        for (int i = 0; i < plan.cars; i++) {
+            carMillis[i] = telemetry.toRaceMillis(telemetry.carNanos[i]);
+        }
+        return new RaceEventSimulation.Result("threaded", plan, telemetry.toRaceMillis(wallNanos), carMillis,
+                telemetry.pitStops, telemetry.toRaceMillis(telemetry.pitWaitNanos.sum()), telemetry.maxPitQueue.get(),
+                0, TimeUnit.NANOSECONDS.toMillis(wallNanos));
+    }
+
+    // Threaded and simulated runs of one plan must agree on everything the plan decides (who pits
+    // when) and, within sleep/scheduling jitter, on the timings; pit queue order may differ slightly
+    private static void crossCheck(RacePlan plan) throws InterruptedException {
+        RaceEventSimulation.Result simulated = new RaceEventSimulation(plan).run();
+        RaceEventSimulation.Result threaded = runThreaded(plan, 0.1);
+        System.out.println(threaded);
+        System.out.println(simulated);
+
+        boolean samePits = Arrays.equals(simulated.pitStops, threaded.pitStops);
+        double drift = Math.abs(threaded.raceMillis - simulated.raceMillis) / (double) simulated.raceMillis;
+        boolean samePodium = Arrays.equals(simulated.podium(3), threaded.podium(3));
+        System.out.printf("[check] pit stops per car: %s%n", samePits ? "identical" : "DIFFERENT");
+        System.out.printf("[check] race time drift: %.1f%% %s%n", drift * 100, drift <= 0.05 ? "(ok)" : "(over 5%)");
+        System.out.printf("[check] podium: %s%n", samePodium ? "identical" : "different (jitter between close cars or pit queue order)");
+        System.out.println(samePits && drift <= 0.05 ? "[check] PASS" : "[check] FAIL");
+    }
+
+    // Per-car measurements from the threaded run; each car writes only its own slots
+    static final class Telemetry {
+        final double scale;
+        final long[] carNanos;
+        final int[] pitStops;
+        final LongAdder pitWaitNanos = new LongAdder();
+        final AtomicInteger maxPitQueue = new AtomicInteger();
+        final CountDownLatch finished;
+
+        Telemetry(RacePlan plan, double scale) {
+            this.scale = scale;
+            this.carNanos = new long[plan.cars];
+            this.pitStops = new int[plan.cars];
+            this.finished = new CountDownLatch(plan.cars);
+        }
+
+        long toRaceMillis(long nanos) {
+            return Math.round(nanos / 1e6 / scale);
+        }
     }
 }
 
 class Car implements Runnable{
 
     private final String name;
+    private final int index;
+    private final RacePlan plan;
     private final CountDownLatch receStart;
-    private final CyclicBarrier lapBarrier;
+    private final PhaseCoordinator.Member lapBarrier;
     private final Semaphore pitStop;
     private final int totalLaps;
+    private final RaceSimulation.Telemetry telemetry;
 
 
-    public Car(String name, CountDownLatch receStart, CyclicBarrier lapBarrier, Semaphore pitStop, int totalLaps) {
+    public Car(String name, int index, RacePlan plan, CountDownLatch receStart, PhaseCoordinator.Member lapBarrier,
+               Semaphore pitStop, RaceSimulation.Telemetry telemetry) {
         this.name = name;
+        this.index = index;
+        this.plan = plan;
         this.receStart = receStart;
         this.lapBarrier = lapBarrier;
         this.pitStop = pitStop;
-        this.totalLaps = totalLaps;
+        this.totalLaps = plan.laps;
+        this.telemetry = telemetry;
     }
 
 
@@ -53,34 +150,48 @@ class Car implements Runnable{
             receStart.await();
 
             for(int lap = 1; lap <= totalLaps; lap++) {
+                long lapStart = System.nanoTime();
                 driveLap(lap);
 
-                if(Math.random() < 0.5) {
-                    pitStop();
+                if(plan.pits(index, lap)) {
+                    pitStop(lap);
                 }
 
-                lapBarrier.await();
+                telemetry.carNanos[index] += System.nanoTime() - lapStart;
+                lapBarrier.arriveAndAwait();
             }
 
             System.out.println(name + " 🏆 finished the race!");
+        }catch (PhaseCoordinator.EvictedException e) {
+            System.out.println(name + " 🚩 " + e.getMessage());
         }catch (Exception e) {
             Thread.currentThread().interrupt();
+        }finally {
+            lapBarrier.leave();
+            telemetry.finished.countDown();
         }
     }
 
     private void driveLap(int lap) throws InterruptedException{
         System.out.println(name + " driving lap " + lap + "....");
-        Thread.sleep((int)(Math.random() * 2000) + 1000);
+        Thread.sleep(scaled(plan.lapMillis(index, lap)));
         System.out.println(name + " finished lap " + lap);
     }
 
-    private void pitStop() throws InterruptedException {
+    private void pitStop(int lap) throws InterruptedException {
         System.out.println(name + " requesting pit stop..");
+        telemetry.pitStops[index]++;
+        telemetry.maxPitQueue.accumulateAndGet(pitStop.getQueueLength() + (pitStop.availablePermits() == 0 ? 1 : 0), Math::max);
+        long requested = System.nanoTime();
         pitStop.acquire();
+        telemetry.pitWaitNanos.add(System.nanoTime() - requested);
         System.out.println(name + " entered pit stop 🧰");
-        Thread.sleep((int)(Math.random() * 1500) + 500);
+        Thread.sleep(scaled(plan.pitMillis(index, lap)));
         System.out.println(name + " leaving pit stop.");
         pitStop.release();
     }
-}
 
+    private long scaled(int millis) {
+        return Math.round(millis * telemetry.scale);
+    }
+}
@@ -0,0 +1,229 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dependency-aware rolling update.
+ *
+ * Services restart in reverse topological order: a service is only taken out of rotation after
+ * everything that depends on it has been updated, so callers never talk to a half-updated
+ * backend. Independent subgraphs proceed in parallel, bounded by a global window (services out
+ * of rotation at once) and a per-tier window. There are no batch barriers: each service moves
+ * prepare -> restart -> post-check on its own and releases its window slot as soon as it is done.
+ * Post-checks go through the shared {@link HealthCheckEngine}, so no thread blocks on them; a
+ * service that still fails its post-check after a retry fails the update's {@link TaskScope},
+ * which stops every other restart in flight and admits nothing further.
+ */
+class RollingUpdater {
+
+    private static final int POST_CHECK_ATTEMPTS = 2;
+
+    private final TaskScope scope;
+    private final HealthCheckEngine healthChecks;
+    private final Map<String, Service> services;
+    private final int globalWindow;
+    private final int tierWindow;
+
+    // tier 0 = nothing depends on it (updated first); tier n = 1 + max tier of its dependents
+    private final Map<String, Integer> tiers = new HashMap<>();
+    // dependents still to be updated; reaching 0 makes the service eligible
+    private final Map<String, AtomicInteger> pendingDependents = new HashMap<>();
+    private final Map<String, Long> updateMs = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private final PriorityQueue<Service> ready;
+    private final int[] inFlightPerTier;
+    private int inFlight;
+
+    private long startNanos;
+
+    RollingUpdater(TaskScope scope, HealthCheckEngine healthChecks, Map<String, Service> services,
+                   int globalWindow, int tierWindow) {
+        if (globalWindow < 1 || tierWindow < 1) {
+            throw new IllegalArgumentException("windows must be >= 1");
+        }
+        this.scope = scope;
+        this.healthChecks = healthChecks;
+        this.services = services;
+        this.globalWindow = globalWindow;
+        this.tierWindow = tierWindow;
+
+        List<String> order = StartupScheduler.topologicalOrder(services);
+        int maxTier = 0;
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Service s = services.get(order.get(i));
+            int tier = 0;
+            for (String dependent : s.dependents) {
+                tier = Math.max(tier, tiers.get(dependent) + 1);
+            }
+            tiers.put(s.name, tier);
+            maxTier = Math.max(maxTier, tier);
+        }
+        this.inFlightPerTier = new int[maxTier + 1];
+        this.ready = new PriorityQueue<>(Comparator.<Service>comparingInt(s -> tiers.get(s.name))
+                .thenComparing(s -> s.name));
+    }
+
+    CompletableFuture<Report> run() {
+        startNanos = System.nanoTime();
+        synchronized (this) {
+            for (Service s : services.values()) {
+                pendingDependents.put(s.name, new AtomicInteger(s.dependents.size()));
+                if (s.dependents.isEmpty()) ready.add(s);
+            }
+        }
+        pump();
+
+        CompletableFuture<Report> done = new CompletableFuture<>();
+        scope.completion().whenComplete((v, e) -> {
+            if (e == null) {
+                done.complete(report());
+            } else {
+                List<String> skipped = new ArrayList<>();
+                for (String name : services.keySet()) {
+                    if (!updateMs.containsKey(name)) skipped.add(name);
+                }
+                done.completeExceptionally(e instanceof TaskScope.FailedException
+                        ? ((TaskScope.FailedException) e).withSkipped(skipped) : e);
+            }
+        });
+        return done;
+    }
+
+    // Admit as many ready services as the global and per-tier windows allow.
+    private void pump() {
+        List<Service> admitted = new ArrayList<>();
+        synchronized (this) {
+            // poll in priority order (a PriorityQueue iterator is in heap order); services whose
+            // tier window is full go back afterwards
+            List<Service> skipped = new ArrayList<>();
+            while (!ready.isEmpty() && inFlight < globalWindow) {
+                Service s = ready.poll();
+                int tier = tiers.get(s.name);
+                if (inFlightPerTier[tier] < tierWindow) {
+                    inFlight++;
+                    inFlightPerTier[tier]++;
+                    admitted.add(s);
+                } else {
+                    skipped.add(s);
+                }
+            }
+            ready.addAll(skipped);
+        }
+
+        for (Service s : admitted) {
+            scope.fork(s.name, () -> {
+                update(s);
+                return null;
+            });
+        }
+    }
+
+    private void update(Service s) throws InterruptedException {
+        long begin = System.nanoTime();
+
+        // PHASE 1: prepare (e.g., drain connections, take out of LB)
+        System.out.printf("[%s] PREPARE for restart (drain, tier %d)...%n", s.name, tiers.get(s.name));
+        Thread.sleep(200 + (int)(Math.random() * 300));
+
+        // PHASE 2: restart; the post-check must probe the new instance, not the cached old one
+        s.restart();
+        healthChecks.invalidate(s.name);
+
+        // PHASE 3: post-check on the shared engine (no thread waits for it), then reattach to LB;
+        // adopted before this task exits, so the scope keeps waiting for it
+        scope.adopt(s.name + " post-check", postCheck(s, 1)
+                .thenAcceptAsync(hc -> {
+                    System.out.printf("[%s] POST-CHECK -> %s%n", s.name, hc.status);
+                    finish(s, begin);
+                }, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS, scope.executor())));
+    }
+
+    // one retry absorbs a transient probe failure; a second failure stops the rollout
+    private CompletableFuture<HealthCheckEngine.Result> postCheck(Service s, int attempt) {
+        return healthChecks.check(s, Math.min(700, scope.remainingMs())).thenCompose(hc -> {
+            if (hc.status == HealthCheckEngine.Status.OK) return CompletableFuture.completedFuture(hc);
+            if (attempt >= POST_CHECK_ATTEMPTS) {
+                return CompletableFuture.failedFuture(new IllegalStateException(
+                        "post-check " + hc.status + " after " + attempt + " attempts"));
+            }
+            System.out.printf("[%s] POST-CHECK -> %s, retrying%n", s.name, hc.status);
+            return postCheck(s, attempt + 1);
+        });
+    }
+
+    private void finish(Service s, long begin) {
+        updateMs.put(s.name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+
+        synchronized (this) {
+            inFlight--;
+            inFlightPerTier[tiers.get(s.name)]--;
+            // all dependents of each dependency updated -> that dependency may go next
+            for (String dep : s.dependencies) {
+                if (pendingDependents.get(dep).decrementAndGet() == 0) {
+                    ready.add(services.get(dep));
+                }
+            }
+        }
+        pump();
+    }
+
+    private Report report() {
+        // longest chain of measured update durations, walking from the leaves towards the roots
+        List<String> order = StartupScheduler.topologicalOrder(services);
+        Map<String, Long> pathMs = new HashMap<>();
+        Map<String, String> via = new HashMap<>();
+        String tail = null;
+        for (int i = order.size() - 1; i >= 0; i--) {
+            String name = order.get(i);
+            long best = 0;
+            for (String dependent : services.get(name).dependents) {
+                if (pathMs.get(dependent) > best) {
+                    best = pathMs.get(dependent);
+                    via.put(name, dependent);
+                }
+            }
+            pathMs.put(name, best + updateMs.getOrDefault(name, 0L));
+            if (tail == null || pathMs.get(name) > pathMs.get(tail)) tail = name;
+        }
+
+        List<String> criticalPath = new ArrayList<>();
+        for (String n = tail; n != null; n = via.get(n)) {
+            criticalPath.add(n);
+        }
+        Collections.reverse(criticalPath);
+
+        long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return new Report(wallMs, tail == null ? 0 : pathMs.get(tail), criticalPath);
+    }
+
+    static final class Report {
+        final long wallMs;
+        final long criticalPathMs;
+        final List<String> criticalPath;
+
+        Report(long wallMs, long criticalPathMs, List<String> criticalPath) {
+            this.wallMs = wallMs;
+            this.criticalPathMs = criticalPathMs;
+            this.criticalPath = criticalPath;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[rolling-update] all services updated in %dms (critical path %dms: %s)",
+                    wallMs, criticalPathMs, String.join(" -> ", criticalPath));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+import multithreading.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Composes the non-blocking Service API into a per-service pipeline of stages, by default
+ * startup -> health -> traffic. Each stage is bounded with {@code orTimeout} and may be retried;
+ * stages are chained with {@code thenCompose}, and a service's pipeline starts from
+ * {@code allOf} its dependencies' pipelines, so the whole graph is one web of callbacks and no
+ * thread ever waits on another. With the Service methods running on an {@link EventLoop},
+ * thousands of services move through the pipeline on a single thread.
+ *
+ * Cancelling the future {@link #runAll} returns (a failing {@link TaskScope} does that to what
+ * it adopted) cancels every step still in flight and stops the pipelines from starting new ones.
+ * A step that times out is completed with the TimeoutException itself, so neither a timed-out
+ * nor a cancelled step gets to change the service's state when its work finishes later.
+ */
+class ServicePipeline {
+
+    private static final class Stage {
+        final String name;
+        final Function<Service, CompletionStage<?>> step;
+        final long timeoutMs;
+        final int attempts;
+        final LatencyHistogram latencyMs = new LatencyHistogram();
+
+        Stage(String name, Function<Service, CompletionStage<?>> step, long timeoutMs, int attempts) {
+            this.name = name;
+            this.step = step;
+            this.timeoutMs = timeoutMs;
+            this.attempts = attempts;
+        }
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    /** Adds a stage; {@code step} fails the attempt by completing exceptionally or timing out. */
+    ServicePipeline then(String name, Function<Service, CompletionStage<?>> step, long timeoutMs, int attempts) {
+        if (attempts < 1) throw new IllegalArgumentException("attempts must be >= 1");
+        stages.add(new Stage(name, step, timeoutMs, attempts));
+        return this;
+    }
+
+    /** startup (3s) -> health (500ms, up to 3 probes) -> traffic (200ms). */
+    static ServicePipeline standard() {
+        return new ServicePipeline()
+                .then("startup", Service::startAsync, 3000, 1)
+                .then("health", s -> s.checkAsync().thenAccept(ok -> {
+                    if (!ok) throw new IllegalStateException("health probe reported unhealthy");
+                }), 500, 3)
+                .then("traffic", Service::enableTrafficAsync, 200, 1);
+    }
+
+    /** Runs every stage for one service; fails with the first stage that runs out of attempts. */
+    CompletableFuture<Void> run(Service s) {
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (Stage stage : stages) {
+            chain = chain.thenCompose(v -> attempt(stage, s, 1));
+        }
+        return chain;
+    }
+
+    private CompletableFuture<Void> attempt(Stage stage, Service s, int attempt) {
+        if (cancelled) return CompletableFuture.failedFuture(new CancellationException(s.name + ": pipeline cancelled"));
+        long begin = System.nanoTime();
+        CompletableFuture<?> step = stage.step.apply(s).toCompletableFuture();
+        inFlight.add(step);
+        if (cancelled) step.cancel(true); // cancel() may have swept inFlight before the add
+        // orTimeout completes the step future itself, so the step's own pending action (the one
+        // that marks the service started, healthy or serving) is skipped, not just ignored
+        return step.orTimeout(stage.timeoutMs, TimeUnit.MILLISECONDS)
+                .handle((v, e) -> {
+                    inFlight.remove(step);
+                    return e;
+                })
+                .thenCompose(e -> {
+                    if (cancelled) {
+                        return CompletableFuture.<Void>failedFuture(new CancellationException(s.name + ": pipeline cancelled"));
+                    }
+                    if (e == null) {
+                        stage.latencyMs.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    if (attempt < stage.attempts) return attempt(stage, s, attempt + 1);
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    String reason = cause instanceof TimeoutException
+                            ? "timed out after " + stage.timeoutMs + "ms" : cause.toString();
+                    return CompletableFuture.<Void>failedFuture(new IllegalStateException(
+                            s.name + ": " + stage.name + " failed after " + attempt + " attempt(s): " + reason, cause));
+                });
+    }
+
+    /**
+     * Runs the pipeline for every service, each one starting when all of its dependencies have
+     * completed theirs. A failed service fails the returned future only after the rest of the
+     * graph has settled; its dependents are skipped, everything independent still completes.
+     */
+    CompletableFuture<Report> runAll(Map<String, Service> services) {
+        long begin = System.nanoTime();
+        Map<String, CompletableFuture<Void>> pipelines = new HashMap<>();
+        Map<String, Throwable> failed = new ConcurrentHashMap<>();
+        LongAdder skipped = new LongAdder();
+
+        for (String name : StartupScheduler.topologicalOrder(services)) {
+            Service s = services.get(name);
+            CompletableFuture<?>[] deps = s.dependencies.stream().map(pipelines::get).toArray(CompletableFuture[]::new);
+            CompletableFuture<Void> pipeline = CompletableFuture.allOf(deps)
+                    .handle((v, e) -> e)
+                    .thenCompose(e -> {
+                        if (e != null) {
+                            skipped.increment();
+                            return CompletableFuture.<Void>failedFuture(new IllegalStateException(name + ": dependency failed"));
+                        }
+                        return run(s).whenComplete((v, own) -> {
+                            if (own != null) failed.put(name, own instanceof CompletionException ? own.getCause() : own);
+                        });
+                    });
+            pipelines.put(name, pipeline);
+        }
+
+        CompletableFuture<Report> all = CompletableFuture.allOf(pipelines.values().toArray(new CompletableFuture<?>[0]))
+                .handle((v, e) -> {
+                    Report report = new Report(services.size(), failed, skipped.sum(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), stages);
+                    if (!failed.isEmpty()) throw new IllegalStateException(report.toString());
+                    return report;
+                });
+        all.whenComplete((r, e) -> {
+            if (all.isCancelled()) cancel(pipelines.values());
+        });
+        return all;
+    }
+
+    // stops new steps, then cancels the ones in flight and the per-service pipelines
+    private void cancel(Collection<CompletableFuture<Void>> pipelines) {
+        cancelled = true;
+        for (CompletableFuture<?> step : inFlight) {
+            step.cancel(true);
+        }
+        for (CompletableFuture<Void> pipeline : pipelines) {
+            pipeline.cancel(true);
+        }
+    }
+
+    static final class Report {
+        final int services;
+        final Map<String, Throwable> failed;
+        final long skipped;
+        final long wallMs;
+        final List<String> stageSummaries = new ArrayList<>();
+
+        Report(int services, Map<String, Throwable> failed, long skipped, long wallMs, List<Stage> stages) {
+            this.services = services;
+            this.failed = failed;
+            this.skipped = skipped;
+            this.wallMs = wallMs;
+            for (Stage stage : stages) {
+                stageSummaries.add(String.format("%-8s %s", stage.name + ":", stage.latencyMs.summary("ms")));
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("[pipeline] %d services: %d serving, %d failed, %d skipped in %dms",
+                    services, services - failed.size() - skipped, failed.size(), skipped, wallMs));
+            for (String summary : stageSummaries) {
+                sb.append(String.format("%n[pipeline]   %s", summary));
+            }
+            List<String> names = new ArrayList<>(failed.keySet());
+            Collections.sort(names);
+            for (String name : names.subList(0, Math.min(5, names.size()))) {
+                sb.append(String.format("%n[pipeline]   failed: %s", failed.get(name).getMessage()));
+            }
+            if (names.size() > 5) sb.append(String.format("%n[pipeline]   ... and %d more", names.size() - 5));
+            return sb.toString();
+        }
+    }
+}
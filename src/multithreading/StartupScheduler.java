@@ -0,0 +1,277 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+import multithreading.cluster.ReadinessTransport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Event-driven startup of a service dependency graph.
+ *
+ * Instead of submitting every service up front and letting it park on a latch, a service is
+ * forked into the startup {@link TaskScope} only when its last dependency reports READY (a
+ * completion callback walks the {@code dependents} list). A pool of any size therefore makes
+ * progress, and the number of busy threads never exceeds the number of services that can
+ * actually start.
+ *
+ * Given expected startup durations (e.g. measured by the previous run, see
+ * {@link OrchestratorSnapshot}) and a dispatch limit, ready services wait in a priority queue
+ * instead: whenever a slot frees up, the service with the longest expected path to the end of
+ * the graph goes next, so a small pool works down the critical path first rather than spending
+ * its threads on short leaves that could have run later.
+ *
+ * Readiness travels through a {@link ReadinessTransport}: a finished startup is published, and
+ * dependents are released only when the event comes back. In one JVM that is an immediate
+ * callback; with a {@link multithreading.cluster.SocketTransport} several agent processes each
+ * start their {@code local} share of one graph and release each other's dependents, and the
+ * scope stays open until the whole graph is READY (or any agent reports a failure).
+ */
+class StartupScheduler {
+
+    private final TaskScope scope;
+    private final Map<String, Service> services;
+
+    // remaining unfinished dependencies per service; reaching 0 makes the service ready
+    private final Map<String, AtomicInteger> pending = new HashMap<>();
+    private final Set<String> dispatched = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> expectedMs;
+    private final int maxInFlight;
+    // longest expected duration from a service to the end of the graph, itself included
+    private final Map<String, Long> rankMs = new HashMap<>();
+    private final ReadinessTransport transport;
+    private final Predicate<String> local;
+    private final Set<String> announced = ConcurrentHashMap.newKeySet();
+    // completes once every service in the graph, local or not, has been announced READY
+    private final CompletableFuture<Void> graphReady = new CompletableFuture<>();
+
+    // guarded by this
+    private final PriorityQueue<Service> ready;
+    private int inFlight;
+
+    private long startNanos;
+
+    StartupScheduler(TaskScope scope, Map<String, Service> services) {
+        this(scope, services, Map.of(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@code expectedMs} may be incomplete: services without a measurement are assumed to take
+     * the mean of the known ones. At most {@code maxInFlight} startups are dispatched at once.
+     */
+    StartupScheduler(TaskScope scope, Map<String, Service> services, Map<String, Long> expectedMs, int maxInFlight) {
+        this(scope, services, expectedMs, maxInFlight, ReadinessTransport.inMemory(), name -> true);
+    }
+
+    /**
+     * Starts only the services {@code local} accepts and learns about every READY (its own
+     * included) from {@code transport}, which must deliver them in dependency order.
+     */
+    StartupScheduler(TaskScope scope, Map<String, Service> services, Map<String, Long> expectedMs, int maxInFlight,
+                     ReadinessTransport transport, Predicate<String> local) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be >= 1");
+        this.scope = scope;
+        this.services = services;
+        this.expectedMs = expectedMs;
+        this.maxInFlight = maxInFlight;
+        this.transport = transport;
+        this.local = local;
+        this.ready = new PriorityQueue<>(Comparator.<Service>comparingLong(s -> -rankMs.get(s.name))
+                .thenComparing(s -> s.name));
+    }
+
+    /**
+     * Validates the graph (throws IllegalStateException on a cycle) and dispatches every root
+     * into the scope. The returned future completes once all services are READY. The first
+     * startup failure (or the scope deadline) cancels every startup still running, dependents of
+     * the failed service are never dispatched, and the future fails with the scope's report.
+     */
+    CompletableFuture<Report> start() {
+        List<String> order = topologicalOrder(services);
+        long defaultMs = (long) expectedMs.values().stream().mapToLong(Long::longValue).average().orElse(0);
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Service s = services.get(order.get(i));
+            long tail = 0;
+            for (String dependent : s.dependents) {
+                tail = Math.max(tail, rankMs.get(dependent));
+            }
+            rankMs.put(s.name, tail + expectedMs.getOrDefault(s.name, defaultMs));
+        }
+
+        startNanos = System.nanoTime();
+        synchronized (this) {
+            for (Service s : services.values()) {
+                pending.put(s.name, new AtomicInteger(s.dependencies.size()));
+                if (s.dependencies.isEmpty() && local.test(s.name)) ready.add(s);
+            }
+        }
+        transport.listen(new ReadinessTransport.Listener() {
+            @Override
+            public void ready(String service) {
+                announced(service);
+            }
+
+            @Override
+            public void failed(String service, String reason) {
+                // a local failure has already failed the scope through its own task
+                if (!local.test(service)) scope.fail(service, new IllegalStateException("failed on another agent: " + reason));
+            }
+        });
+        // a synchronous transport releases dependents before the publishing task exits, so the
+        // scope cannot run dry early; otherwise it has to wait for the events explicitly
+        if (!transport.isSynchronous()) scope.adopt("remote-readiness", graphReady);
+        if (services.isEmpty()) graphReady.complete(null);
+        pump();
+
+        CompletableFuture<Report> done = new CompletableFuture<>();
+        scope.completion().whenComplete((v, e) -> {
+            if (e == null) {
+                done.complete(report());
+            } else {
+                List<String> skipped = new ArrayList<>();
+                for (String name : services.keySet()) {
+                    if (local.test(name) && !dispatched.contains(name)) skipped.add(name);
+                }
+                done.completeExceptionally(e instanceof TaskScope.FailedException
+                        ? ((TaskScope.FailedException) e).withSkipped(skipped) : e);
+            }
+        });
+        return done;
+    }
+
+    // Dispatch the highest-ranked ready services while slots are free.
+    private void pump() {
+        List<Service> admitted = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < maxInFlight && !ready.isEmpty()) {
+                inFlight++;
+                admitted.add(ready.poll());
+            }
+        }
+        for (Service s : admitted) {
+            dispatched.add(s.name);
+            scope.fork(s.name, () -> {
+                try {
+                    s.startup();
+                } catch (Exception e) {
+                    // being cancelled is an echo of someone else's failure, not news
+                    if (!(e instanceof InterruptedException)) transport.publishFailed(s.name, String.valueOf(e.getMessage()));
+                    throw e;
+                }
+                synchronized (this) {
+                    inFlight--;
+                }
+                transport.publishReady(s.name, s.lastStartupMs);
+                pump();
+                return null;
+            });
+        }
+    }
+
+    // READY event: one dependency of each dependent is now satisfied
+    private void announced(String name) {
+        Service s = services.get(name);
+        if (s == null || !announced.add(name)) return;
+        synchronized (this) {
+            for (String dependentName : s.dependents) {
+                if (pending.get(dependentName).decrementAndGet() == 0 && local.test(dependentName)) {
+                    ready.add(services.get(dependentName));
+                }
+            }
+        }
+        if (announced.size() == services.size()) graphReady.complete(null);
+        pump();
+    }
+
+    private long elapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private Report report() {
+        // longest chain of measured startup durations = the lower bound on wall time
+        Map<String, Long> pathMs = new HashMap<>();
+        Map<String, String> via = new HashMap<>();
+        String tail = null;
+        for (String name : topologicalOrder(services)) {
+            Service s = services.get(name);
+            long best = 0;
+            for (String dep : s.dependencies) {
+                if (pathMs.get(dep) > best) {
+                    best = pathMs.get(dep);
+                    via.put(name, dep);
+                }
+            }
+            pathMs.put(name, best + s.lastStartupMs);
+            if (tail == null || pathMs.get(name) > pathMs.get(tail)) tail = name;
+        }
+
+        List<String> criticalPath = new ArrayList<>();
+        for (String n = tail; n != null; n = via.get(n)) {
+            criticalPath.add(n);
+        }
+        Collections.reverse(criticalPath);
+
+        return new Report(elapsedMs(), tail == null ? 0 : pathMs.get(tail), criticalPath);
+    }
+
+    /**
+     * Kahn's algorithm over the dependency lists. Throws IllegalStateException naming the
+     * services that are part of (or stuck behind) a cycle.
+     */
+    static List<String> topologicalOrder(Map<String, Service> services) {
+        Map<String, Integer> inDegree = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        for (Service s : services.values()) {
+            inDegree.put(s.name, s.dependencies.size());
+            if (s.dependencies.isEmpty()) ready.add(s.name);
+        }
+
+        List<String> order = new ArrayList<>(services.size());
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            order.add(name);
+            for (String dependent : services.get(name).dependents) {
+                if (inDegree.merge(dependent, -1, Integer::sum) == 0) ready.add(dependent);
+            }
+        }
+
+        if (order.size() != services.size()) {
+            List<String> stuck = new ArrayList<>();
+            inDegree.forEach((name, degree) -> { if (degree > 0) stuck.add(name); });
+            Collections.sort(stuck);
+            throw new IllegalStateException("dependency cycle detected among " + stuck);
+        }
+        return order;
+    }
+
+    static final class Report {
+        final long wallMs;
+        final long criticalPathMs;
+        final List<String> criticalPath;
+
+        Report(long wallMs, long criticalPathMs, List<String> criticalPath) {
+            this.wallMs = wallMs;
+            this.criticalPathMs = criticalPathMs;
+            this.criticalPath = criticalPath;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[startup] all services READY in %dms (critical path %dms: %s)",
+                    wallMs, criticalPathMs, String.join(" -> ", criticalPath));
+        }
+    }
+}
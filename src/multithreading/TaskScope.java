@@ -0,0 +1,400 @@
+package multithreading;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A structured group of tasks with one owner, one deadline and one outcome.
+ *
+ * Tasks are forked into the scope (or existing futures adopted into it); the scope completes
+ * when every task has exited. The first failure cancels everything else still running in the
+ * scope and in its child scopes (running tasks are interrupted, queued ones never start), and
+ * the deadline does the same with a TimeoutException. A failing child fails its parent. The
+ * outcome is either normal completion or a single {@link FailedException} listing what failed,
+ * what was cancelled and (filled in by the owner) what never started.
+ *
+ * The JDK's StructuredTaskScope is still a preview API; this covers the same ground on Java 17
+ * for both blocking ({@link #join()}) and CompletableFuture-based ({@link #completion()}) owners.
+ */
+class TaskScope implements AutoCloseable {
+
+    static final class Failure {
+        final String task;
+        final Throwable cause;
+        final long atMs;
+
+        Failure(String task, Throwable cause, long atMs) {
+            this.task = task;
+            this.cause = cause;
+            this.atMs = atMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s after %dms: %s", task, atMs, cause);
+        }
+    }
+
+    /** Aggregated outcome of a failed scope. */
+    static final class FailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final String scope;
+        final long elapsedMs;
+        final List<Failure> failures;
+        final List<String> cancelled;
+        final List<String> skipped;
+
+        FailedException(String scope, long elapsedMs, List<Failure> failures, List<String> cancelled, List<String> skipped) {
+            super(describe(scope, elapsedMs, failures, cancelled, skipped),
+                    failures.isEmpty() ? null : failures.get(0).cause, false, false);
+            this.scope = scope;
+            this.elapsedMs = elapsedMs;
+            this.failures = failures;
+            this.cancelled = cancelled;
+            this.skipped = skipped;
+        }
+
+        /** Same report plus the tasks the owner never got to start. */
+        FailedException withSkipped(Collection<String> names) {
+            List<String> sorted = new ArrayList<>(names);
+            Collections.sort(sorted);
+            return new FailedException(scope, elapsedMs, failures, cancelled, sorted);
+        }
+
+        private static String describe(String scope, long elapsedMs, List<Failure> failures,
+                                       List<String> cancelled, List<String> skipped) {
+            StringBuilder sb = new StringBuilder(String.format("[%s] FAILED after %dms", scope, elapsedMs));
+            for (Failure f : failures) {
+                sb.append(String.format("%n[%s]   failed:    %s", scope, f));
+            }
+            if (!cancelled.isEmpty()) sb.append(String.format("%n[%s]   cancelled: %s", scope, String.join(", ", cancelled)));
+            if (!skipped.isEmpty()) sb.append(String.format("%n[%s]   skipped:   %s", scope, String.join(", ", skipped)));
+            return sb.toString();
+        }
+    }
+
+    // something the scope waits for and can cancel: a forked task, an adopted future or a child scope
+    private interface Member {
+        String name();
+
+        void cancel();
+    }
+
+    private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "scope-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String name;
+    private final Executor executor;
+    private final TaskScope parent;
+    private final long startNanos = System.nanoTime();
+    private final long deadlineNanos;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final ScheduledFuture<?> deadlineTimer;
+
+    // guarded by this
+    private final Set<Member> live = new LinkedHashSet<>();
+    private final List<Failure> failures = new ArrayList<>();
+    private final List<String> cancelled = new ArrayList<>();
+    private int outstanding;
+    private boolean sealed;
+    private boolean failed;
+
+    private TaskScope(String name, Executor executor, TaskScope parent, long budgetMs) {
+        this.name = name;
+        this.executor = executor;
+        this.parent = parent;
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        // deadline propagation: a child never outlives its parent
+        this.deadlineNanos = parent == null ? deadline : Math.min(deadline, parent.deadlineNanos);
+        this.deadlineTimer = DEADLINES.schedule(
+                () -> fail(name, new TimeoutException("deadline of " + budgetMs + "ms exceeded")),
+                deadlineNanos - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    static TaskScope open(String name, Executor executor, long budgetMs) {
+        return new TaskScope(name, executor, null, budgetMs);
+    }
+
+    /** Child scope on the same executor; its deadline is the earlier of its own budget and ours. */
+    TaskScope child(String childName, long budgetMs) {
+        TaskScope child = new TaskScope(childName, executor, this, budgetMs);
+        Member member = new Member() {
+            @Override
+            public String name() {
+                return childName;
+            }
+
+            @Override
+            public void cancel() {
+                child.fail(name, new CancellationException("parent scope " + name + " failed"));
+            }
+        };
+        if (!register(member)) {
+            child.fail(name, new CancellationException("parent scope " + name + " already finished"));
+        }
+        child.completion.whenComplete((v, e) -> exited(member));
+        return child;
+    }
+
+    String name() {
+        return name;
+    }
+
+    Executor executor() {
+        return executor;
+    }
+
+    /** Time left before the deadline; pass it down as the timeout of anything the task waits on. */
+    long remainingMs() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    boolean isFailed() {
+        synchronized (this) {
+            return failed;
+        }
+    }
+
+    /**
+     * Runs {@code body} on the scope's executor. An exception fails the whole scope; if the
+     * scope has already failed the task is not started and the returned future is cancelled.
+     */
+    <T> CompletableFuture<T> fork(String task, Callable<T> body) {
+        Subtask<T> subtask = new Subtask<>(task, body);
+        if (!register(subtask)) {
+            subtask.result.cancel(false);
+            return subtask.result;
+        }
+        try {
+            executor.execute(subtask);
+        } catch (RejectedExecutionException e) {
+            subtask.result.completeExceptionally(e);
+            fail(task, e);
+            exited(subtask);
+        }
+        return subtask.result;
+    }
+
+    /**
+     * Makes the scope wait for {@code future}; exceptional completion fails the scope and
+     * scope failure cancels the future.
+     */
+    <T> CompletableFuture<T> adopt(String task, CompletableFuture<T> future) {
+        Member member = new Member() {
+            @Override
+            public String name() {
+                return task;
+            }
+
+            @Override
+            public void cancel() {
+                future.cancel(true);
+            }
+        };
+        if (!register(member)) {
+            future.cancel(true);
+            return future;
+        }
+        future.whenComplete((v, e) -> {
+            if (e != null && !(e instanceof CancellationException)) {
+                fail(task, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e, member);
+            }
+            exited(member);
+        });
+        return future;
+    }
+
+    /** Records a failure and cancels every task still running in this scope. */
+    void fail(String task, Throwable cause) {
+        fail(task, cause, null);
+    }
+
+    // self: the failing member, which is on its way out and must not be reported as cancelled
+    private void fail(String task, Throwable cause, Member self) {
+        List<Member> toCancel;
+        synchronized (this) {
+            if (completion.isDone()) return;
+            if (failed) {
+                // later failures are recorded too, but not the echoes of our own cancellation
+                if (!(cause instanceof CancellationException)) failures.add(new Failure(task, cause, elapsedMs()));
+                return;
+            }
+            failures.add(new Failure(task, cause, elapsedMs()));
+            failed = true;
+            toCancel = new ArrayList<>(live);
+            toCancel.remove(self);
+            for (Member m : toCancel) cancelled.add(m.name());
+        }
+        for (Member m : toCancel) m.cancel();
+        if (parent != null) parent.fail(name, cause);
+        maybeComplete();
+    }
+
+    /**
+     * Completes once every task has exited: normally, or with a {@link FailedException}. Calling
+     * it tells the scope the owner is done forking (tasks may still fork from inside the scope).
+     */
+    CompletableFuture<Void> completion() {
+        synchronized (this) {
+            sealed = true;
+        }
+        maybeComplete();
+        return completion;
+    }
+
+    /** Blocks until every task has exited; throws the aggregated failure, if any. */
+    void join() throws InterruptedException {
+        await(completion());
+    }
+
+    /**
+     * Cancels whatever is still running and waits for it to exit. Never throws the failure; an
+     * interrupt while waiting is passed on (flag restored) rather than thrown.
+     */
+    @Override
+    public void close() {
+        if (!completion.isDone()) {
+            synchronized (this) {
+                sealed = true;
+            }
+            if (!isFailed() && outstanding() > 0) {
+                fail(name, new CancellationException("scope closed with tasks still running"));
+            }
+            maybeComplete();
+        }
+        try {
+            completion.get();
+        } catch (ExecutionException e) {
+            // the failure is reported through join()/completion(); close() only waits
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deadlineTimer.cancel(false);
+        }
+    }
+
+    /** {@code future.get()} that rethrows a scope failure as-is instead of wrapped. */
+    static <T> T await(CompletableFuture<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    private synchronized int outstanding() {
+        return outstanding;
+    }
+
+    private boolean register(Member member) {
+        synchronized (this) {
+            if (failed || completion.isDone()) return false;
+            live.add(member);
+            outstanding++;
+            return true;
+        }
+    }
+
+    private void exited(Member member) {
+        synchronized (this) {
+            if (!live.remove(member)) return;
+            outstanding--;
+        }
+        maybeComplete();
+    }
+
+    private void maybeComplete() {
+        FailedException failure;
+        synchronized (this) {
+            if (!sealed || outstanding > 0 || completion.isDone()) return;
+            failure = failed ? new FailedException(name, elapsedMs(), new ArrayList<>(failures),
+                    new ArrayList<>(cancelled), List.of()) : null;
+        }
+        deadlineTimer.cancel(false);
+        if (failure == null) completion.complete(null);
+        else completion.completeExceptionally(failure);
+    }
+
+    private long elapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private final class Subtask<T> implements Runnable, Member {
+        private final String task;
+        private final Callable<T> body;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        // guarded by this: the runner is only interrupted while it is still inside body
+        private Thread runner;
+        private boolean cancelled;
+
+        Subtask(String task, Callable<T> body) {
+            this.task = task;
+            this.body = body;
+        }
+
+        @Override
+        public String name() {
+            return task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                synchronized (this) {
+                    if (cancelled) return; // cancelled while queued: never starts
+                    runner = Thread.currentThread();
+                }
+                try {
+                    result.complete(body.call());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                    boolean byScope;
+                    synchronized (this) {
+                        byScope = cancelled;
+                    }
+                    if (!byScope) fail(task, t, this);
+                }
+            } finally {
+                boolean interruptedByUs;
+                synchronized (this) {
+                    runner = null;
+                    interruptedByUs = cancelled;
+                }
+                // don't leak our cancellation interrupt into the next task on this pool thread
+                if (interruptedByUs) Thread.interrupted();
+                exited(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                if (runner != null) runner.interrupt();
+            }
+            result.cancel(false);
+        }
+    }
+}
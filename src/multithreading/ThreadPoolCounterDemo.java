@@ -42,6 +42,13 @@ public class ThreadPoolCounterDemo {
         System.out.println("All tasks finished. Final counter value : " + counter.get());
 
         executor.shutdown();
+
+        // Same 6 x 1000 increments on a work-stealing pool: every leaf counts into a local and the
+        // partial sums are added up the task tree, so no thread ever touches a shared counter.
+        try (ForkJoinCounter forkJoin = new ForkJoinCounter(poolSize)) {
+            long total = forkJoin.sum(numTasks * 1000L, 1000, i -> 1);
+            System.out.println("ForkJoin (parallelism " + forkJoin.parallelism() + ") final value : " + total);
+        }
     }
 
 
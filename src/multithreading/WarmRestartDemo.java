@@ -0,0 +1,92 @@
+package multithreading;
+
+import multithreading.MicroserviceOrchestrator.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start vs warm restart of a large generated graph on a small pool.
+ *
+ * The cold run dispatches services in the order they become ready, probes every one of them and
+ * writes an {@link OrchestratorSnapshot}. The warm run rebuilds the graph from that snapshot,
+ * lets {@link StartupScheduler} start the longest measured path first and trusts the recent OK
+ * health results instead of probing again. Startup durations are fixed per service (a few are
+ * slow) so both runs do the same work.
+ *
+ * Usage: WarmRestartDemo [services=400] [threads=8] [snapshot=warm-restart.snap] [seed=7]
+ */
+public class WarmRestartDemo {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        Path path = Paths.get(args.length > 2 ? args[2] : "warm-restart.snap");
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 7;
+
+        Map<String, List<String>> deps = AsyncOrchestratorDemo.generate(count, 8, 2, new Random(seed));
+        int[] startupMs = new int[count];
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            startupMs[i] = random.nextInt(20) == 0 ? 300 + random.nextInt(300) : 20 + random.nextInt(60);
+        }
+
+        System.out.printf("%d services, %d startup threads%n", count, threads);
+        ExecutorService probes = ExecutionMode.fromSystemProperty().newExecutor("probes", 64);
+        try (HealthCheckEngine healthChecks = new HealthCheckEngine(probes)) {
+            Map<String, Service> cold = prepare(deps, startupMs);
+            List<HealthCheckEngine.Result> health = run("cold", cold, healthChecks, Map.of(), Integer.MAX_VALUE, threads);
+            OrchestratorSnapshot.capture(cold, health).write(path);
+
+            OrchestratorSnapshot snapshot = OrchestratorSnapshot.read(path);
+            System.out.println(snapshot);
+            for (String name : snapshot.recentlyHealthy(MicroserviceOrchestrator.WARM_TRUST_MS)) {
+                healthChecks.trust(name, MicroserviceOrchestrator.WARM_TRUST_MS);
+            }
+            run("warm", prepare(snapshot.graph(), startupMs), healthChecks, snapshot.startupMs(), threads, threads);
+        } finally {
+            probes.shutdownNow();
+        }
+    }
+
+    private static Map<String, Service> prepare(Map<String, List<String>> deps, int[] startupMs) {
+        Map<String, Service> services = MicroserviceOrchestrator.buildServices(deps);
+        for (Service s : services.values()) {
+            s.verbose = false;
+            s.fixedStartupMs = startupMs[Integer.parseInt(s.name.substring("svc-".length()))];
+        }
+        return services;
+    }
+
+    private static List<HealthCheckEngine.Result> run(String label, Map<String, Service> services,
+                                                      HealthCheckEngine healthChecks, Map<String, Long> expectedMs,
+                                                      int maxInFlight, int threads) throws InterruptedException {
+        ExecutorService executor = ExecutionMode.fromSystemProperty().newExecutor(label, threads);
+        try (TaskScope scope = TaskScope.open(label, executor, 120_000)) {
+            StartupScheduler.Report startup;
+            try (TaskScope child = scope.child("startup", scope.remainingMs())) {
+                startup = TaskScope.await(new StartupScheduler(child, services, expectedMs, maxInFlight).start());
+            }
+
+            long begin = System.nanoTime();
+            List<HealthCheckEngine.Result> results;
+            try (TaskScope sweep = scope.child("health-check", 5_100)) {
+                results = healthChecks.sweep(sweep, services.values(), 5_000, r -> { });
+            }
+            long sweepMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+            long cached = results.stream().filter(r -> r.cached).count();
+            long ok = results.stream().filter(r -> r.status == HealthCheckEngine.Status.OK).count();
+
+            System.out.printf("[%s] startup %dms (critical path %dms), health sweep %dms: %d OK, %d probed, %d trusted%n",
+                    label, startup.wallMs, startup.criticalPathMs, sweepMs, ok, results.size() - cached, cached);
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
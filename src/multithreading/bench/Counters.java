@@ -0,0 +1,147 @@
+package multithreading.bench;
+
+import multithreading.state.LockFreeAccumulator;
+import multithreading.state.LongCounter;
+import multithreading.state.OptimisticLong;
+import multithreading.state.StripedCounter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The shared-counter variants used across the demos (DataRaceDemo, ThreadPoolCounterDemo,
+ * CountDownLatchEx, ReentrantLockDemo, FairLockDemo) plus the alternatives worth comparing.
+ */
+public final class Counters {
+
+    public interface Counter {
+        void increment();
+
+        long get();
+    }
+
+    public static final class Variant {
+        public final String name;
+        public final Supplier<Counter> factory;
+
+        Variant(String name, Supplier<Counter> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+    }
+
+    public static Variant[] all() {
+        return new Variant[]{
+                new Variant("synchronized", SynchronizedCounter::new),
+                new Variant("AtomicInteger", AtomicCounter::new),
+                new Variant("LongAdder", AdderCounter::new),
+                new Variant("ReentrantLock", () -> new LockCounter(false)),
+                new Variant("ReentrantLock(fair)", () -> new LockCounter(true)),
+                new Variant("StampedLock", () -> of(new OptimisticLong())),
+                new Variant("striped", () -> of(new StripedCounter())),
+                new Variant("lock-free accumulator", () -> of(LockFreeAccumulator.sum())),
+        };
+    }
+
+    /** The variant called {@code name}, as used for the JMH {@code variant} parameter. */
+    public static Variant named(String name) {
+        for (Variant v : all()) {
+            if (v.name.equals(name)) return v;
+        }
+        throw new IllegalArgumentException("no counter variant named " + name);
+    }
+
+    // DataRaceDemo.Counter
+    static final class SynchronizedCounter implements Counter {
+        private long count;
+
+        @Override
+        public synchronized void increment() {
+            count++;
+        }
+
+        @Override
+        public synchronized long get() {
+            return count;
+        }
+    }
+
+    // ThreadPoolCounterDemo / CountDownLatchEx
+    static final class AtomicCounter implements Counter {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public long get() {
+            return count.get();
+        }
+    }
+
+    static final class AdderCounter implements Counter {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void increment() {
+            count.increment();
+        }
+
+        @Override
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    // ReentrantLockDemo (unfair) / FairLockDemo (fair)
+    static final class LockCounter implements Counter {
+        private final ReentrantLock lock;
+        private long count;
+
+        LockCounter(boolean fair) {
+            this.lock = new ReentrantLock(fair);
+        }
+
+        @Override
+        public void increment() {
+            lock.lock();
+            try {
+                count++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public long get() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // multithreading.state implementations behind the benchmark interface
+    static Counter of(LongCounter state) {
+        return new Counter() {
+            @Override
+            public void increment() {
+                state.increment();
+            }
+
+            @Override
+            public long get() {
+                return state.get();
+            }
+        };
+    }
+
+    private Counters() {
+    }
+}
@@ -0,0 +1,274 @@
+package multithreading.bench;
+
+import multithreading.ExecutionMode;
+import multithreading.metrics.LatencyHistogram;
+import multithreading.pool.AdaptiveThreadPoolExecutor;
+import multithreading.pool.OverloadPolicies;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load harness for the executor types of ExecutorTypesDemo plus ForkJoinPool, virtual threads
+ * and the AdaptiveThreadPoolExecutor from CustomThreadPoolDemo.
+ *
+ * Workloads (per task):
+ * - cpu:      ~cpuMicros of hashing, no blocking
+ * - blocking: a blockMs sleep, like a remote call
+ * - mixed:    a quarter of the cpu work, then the sleep
+ * - bursty:   mixed tasks arriving in bursts of 10 x threads, one burst every 5 x blockMs; the
+ *             other workloads submit every task up front and measure saturation throughput
+ *
+ * Latency runs from submit to completion, so it includes queueing; it is recorded in
+ * microseconds into a log-linear histogram. Peak threads and peak heap (above the post-GC
+ * baseline) are sampled every 10ms while the run lasts. Each result is also appended as one
+ * JSON object per line to the output file, tagged with the JVM, core count and parameters, so
+ * runs from different commits can be diffed or plotted.
+ *
+ * Usage: ExecutorBenchmark [executors=all] [workloads=all] [tasks=20000] [threads=2 x cores]
+ *                          [cpuMicros=50] [blockMs=5] [out=executor-bench.jsonl]
+ * executors: comma-separated subset of fixed,cached,scheduled,forkjoin,virtual,custom
+ * workloads: comma-separated subset of cpu,blocking,mixed,bursty
+ */
+public class ExecutorBenchmark {
+
+    private static final List<String> EXECUTORS = List.of("fixed", "cached", "scheduled", "forkjoin", "virtual", "custom");
+    private static final List<String> WORKLOADS = List.of("cpu", "blocking", "mixed", "bursty");
+
+    // keeps the JIT from discarding the cpu work
+    private static final AtomicLong SINK = new AtomicLong();
+
+    private static final class Result {
+        final String executor;
+        final String workload;
+        final int tasks;
+        final long wallMs;
+        final LatencyHistogram latencyMicros;
+        final int peakThreads;
+        final long peakHeapMb;
+        final long gcCount;
+        final long rejected;
+
+        Result(String executor, String workload, int tasks, long wallMs, LatencyHistogram latencyMicros,
+               int peakThreads, long peakHeapMb, long gcCount, long rejected) {
+            this.executor = executor;
+            this.workload = workload;
+            this.tasks = tasks;
+            this.wallMs = wallMs;
+            this.latencyMicros = latencyMicros;
+            this.peakThreads = peakThreads;
+            this.peakHeapMb = peakHeapMb;
+            this.gcCount = gcCount;
+            this.rejected = rejected;
+        }
+
+        double throughput() {
+            return (tasks - rejected) * 1000.0 / Math.max(1, wallMs);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %-9s %8d %10.0f %9d %9d %9d %9d %6d %7d %4d",
+                    executor, workload, wallMs, throughput(), latencyMicros.percentile(50),
+                    latencyMicros.percentile(90), latencyMicros.percentile(99), latencyMicros.max(),
+                    peakThreads, peakHeapMb, gcCount);
+        }
+
+        String toJson(String environment) {
+            return String.format("{%s,\"executor\":\"%s\",\"workload\":\"%s\",\"tasks\":%d,\"rejected\":%d,"
+                            + "\"wall_ms\":%d,\"tasks_per_s\":%.1f,\"p50_us\":%d,\"p90_us\":%d,\"p99_us\":%d,"
+                            + "\"p999_us\":%d,\"max_us\":%d,\"mean_us\":%.1f,\"peak_threads\":%d,"
+                            + "\"peak_heap_mb\":%d,\"gc_count\":%d}",
+                    environment, executor, workload, tasks, rejected, wallMs, throughput(),
+                    latencyMicros.percentile(50), latencyMicros.percentile(90), latencyMicros.percentile(99),
+                    latencyMicros.percentile(99.9), latencyMicros.max(), latencyMicros.mean(),
+                    peakThreads, peakHeapMb, gcCount);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<String> executors = select(args.length > 0 ? args[0] : "all", EXECUTORS);
+        List<String> workloads = select(args.length > 1 ? args[1] : "all", WORKLOADS);
+        int tasks = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 2 * cores;
+        int cpuMicros = args.length > 4 ? Integer.parseInt(args[4]) : 50;
+        int blockMs = args.length > 5 ? Integer.parseInt(args[5]) : 5;
+        Path out = Paths.get(args.length > 6 ? args[6] : "executor-bench.jsonl");
+
+        long iterationsPerMicro = calibrate();
+        String environment = String.format("\"timestamp\":%d,\"java\":\"%s\",\"cores\":%d,\"threads\":%d,"
+                        + "\"cpu_us\":%d,\"block_ms\":%d", System.currentTimeMillis(),
+                System.getProperty("java.version"), cores, threads, cpuMicros, blockMs);
+
+        System.out.printf("tasks=%d threads=%d cpu=%dus block=%dms cores=%d java=%s%n%n", tasks, threads,
+                cpuMicros, blockMs, cores, System.getProperty("java.version"));
+        System.out.printf("%-10s %-9s %8s %10s %9s %9s %9s %9s %6s %7s %4s%n", "executor", "workload", "wall ms",
+                "tasks/s", "p50 us", "p90 us", "p99 us", "max us", "thr", "heap MB", "gc");
+
+        List<String> lines = new ArrayList<>();
+        for (String workload : workloads) {
+            for (String executor : executors) {
+                if (executor.equals("virtual") && !ExecutionMode.virtualThreadsAvailable()) {
+                    System.out.printf("%-10s %-9s %s%n", executor, workload, "skipped (needs JDK 21+)");
+                    continue;
+                }
+                // a short unmeasured pass warms up the JIT and the pool before the measured one
+                run(executor, workload, Math.max(1, tasks / 10), threads, cpuMicros * iterationsPerMicro, blockMs);
+                Result result = run(executor, workload, tasks, threads, cpuMicros * iterationsPerMicro, blockMs);
+                System.out.println(result);
+                lines.add(result.toJson(environment));
+            }
+        }
+
+        Files.write(out, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        System.out.printf("%n%d results appended to %s%n", lines.size(), out.toAbsolutePath());
+    }
+
+    private static List<String> select(String arg, List<String> known) {
+        if (arg.equals("all")) return known;
+        List<String> chosen = Arrays.asList(arg.split(","));
+        for (String name : chosen) {
+            if (!known.contains(name)) throw new IllegalArgumentException("unknown '" + name + "', expected " + known);
+        }
+        return chosen;
+    }
+
+    static ExecutorService newExecutor(String kind, int threads) {
+        switch (kind) {
+            case "fixed":
+                return Executors.newFixedThreadPool(threads);
+            case "cached":
+                return Executors.newCachedThreadPool();
+            case "scheduled":
+                return Executors.newScheduledThreadPool(threads);
+            case "forkjoin":
+                return new ForkJoinPool(threads);
+            case "virtual":
+                return ExecutionMode.VIRTUAL.newExecutor("bench", threads);
+            case "custom":
+                // grows from threads towards 4 x threads while tasks wait; a full queue slows the submitter
+                return new AdaptiveThreadPoolExecutor("bench", threads, 4 * threads, 1024, 20, 100,
+                        OverloadPolicies.boundedWait(10, TimeUnit.SECONDS));
+            default:
+                throw new IllegalArgumentException("unknown executor: " + kind);
+        }
+    }
+
+    private static Result run(String kind, String workload, int tasks, int threads, long cpuIterations, int blockMs)
+            throws InterruptedException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+        long gcBefore = gcCount();
+        threadBean.resetPeakThreadCount();
+
+        AtomicBoolean sampling = new AtomicBoolean(true);
+        AtomicLong peakHeap = new AtomicLong(baselineHeap);
+        Thread sampler = new Thread(() -> {
+            while (sampling.get()) {
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "bench-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        ExecutorService executor = newExecutor(kind, threads);
+        LatencyHistogram latencyMicros = new LatencyHistogram();
+        CountDownLatch done = new CountDownLatch(tasks);
+        LongAdder rejected = new LongAdder();
+        long cpu = workload.equals("cpu") ? cpuIterations : cpuIterations / 4;
+        long sleep = workload.equals("cpu") ? 0 : blockMs;
+        int burst = workload.equals("bursty") ? 10 * threads : tasks;
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            if (i > 0 && i % burst == 0) Thread.sleep(5L * blockMs);
+            long submitted = System.nanoTime();
+            try {
+                executor.execute(() -> {
+                    try {
+                        work(cpu, sleep);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        latencyMicros.record((System.nanoTime() - submitted) / 1_000);
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                done.countDown();
+            }
+        }
+        done.await();
+        long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        sampling.set(false);
+        sampler.join();
+        return new Result(kind, workload, tasks, wallMs, latencyMicros, threadBean.getPeakThreadCount(),
+                (peakHeap.get() - baselineHeap) >> 20, gcCount() - gcBefore, rejected.sum());
+    }
+
+    private static void work(long cpuIterations, long sleepMs) throws InterruptedException {
+        if (cpuIterations > 0) SINK.addAndGet(spin(cpuIterations));
+        if (sleepMs > 0) Thread.sleep(sleepMs);
+    }
+
+    private static long spin(long iterations) {
+        long x = iterations;
+        for (long i = 0; i < iterations; i++) {
+            x = x * 0x9E3779B97F4A7C15L + i;
+            x ^= x >>> 29;
+        }
+        return x;
+    }
+
+    // spin iterations per microsecond on this machine, so cpuMicros means roughly the same everywhere
+    private static long calibrate() {
+        long iterations = 1 << 20;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long begin = System.nanoTime();
+            SINK.addAndGet(spin(iterations));
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        return Math.max(1, iterations * 1_000 / best);
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += Math.max(0, gc.getCollectionCount());
+        }
+        return n;
+    }
+}
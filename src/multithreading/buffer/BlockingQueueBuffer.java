@@ -0,0 +1,41 @@
+package multithreading.buffer;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Adapter over a JDK {@link BlockingQueue}. With an ArrayBlockingQueue both ends share one lock;
+ * a LinkedBlockingQueue has separate put and take locks, so producers and consumers contend
+ * only among themselves.
+ */
+public class BlockingQueueBuffer<T> implements Buffer<T> {
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+
+    public BlockingQueueBuffer(String name, BlockingQueue<T> queue) {
+        this.name = name;
+        this.queue = queue;
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        return queue.take();
+    }
+
+    @Override
+    public int takeBatch(List<? super T> into, int max) throws InterruptedException {
+        into.add(queue.take());
+        return 1 + queue.drainTo(into, max - 1);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+}
@@ -0,0 +1,50 @@
+package multithreading.buffer;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Bounded hand-off buffer between producers and consumers.
+ *
+ * Implementations trade generality for speed: the blocking-queue adapters accept any number of
+ * producers and consumers, {@link SpscRingBuffer} exactly one of each, {@link MpmcRingBuffer}
+ * any number on a lock-free preallocated ring.
+ */
+public interface Buffer<T> {
+
+    void put(T item) throws InterruptedException;
+
+    T take() throws InterruptedException;
+
+    /**
+     * Blocks until at least one item is available, then moves up to {@code max} items into
+     * {@code into}, oldest first. Returns the number of items moved.
+     */
+    int takeBatch(List<? super T> into, int max) throws InterruptedException;
+
+    String name();
+
+    /** Creates a buffer by kind: abq, lbq, spsc, or mpmc[-spin|-yield|-park] (mpmc = park). */
+    static <T> Buffer<T> create(String kind, int capacity) {
+        switch (kind) {
+            case "abq":
+                return new BlockingQueueBuffer<>("ArrayBlockingQueue", new ArrayBlockingQueue<>(capacity));
+            case "lbq":
+                return new BlockingQueueBuffer<>("LinkedBlockingQueue", new LinkedBlockingQueue<>(capacity));
+            case "spsc":
+                return new SpscRingBuffer<>(capacity, WaitStrategy.PARK);
+            case "spsc-spin":
+                return new SpscRingBuffer<>(capacity, WaitStrategy.SPIN);
+            case "mpmc":
+            case "mpmc-park":
+                return new MpmcRingBuffer<>(capacity, WaitStrategy.PARK);
+            case "mpmc-spin":
+                return new MpmcRingBuffer<>(capacity, WaitStrategy.SPIN);
+            case "mpmc-yield":
+                return new MpmcRingBuffer<>(capacity, WaitStrategy.YIELD);
+            default:
+                throw new IllegalArgumentException("unknown buffer kind: " + kind);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package multithreading.buffer;
+
+import multithreading.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and hand-off latency of every {@link Buffer} under several producer/consumer mixes.
+ *
+ * Usage: BufferBenchmark [itemsPerProducer=2000000] [capacity=1024] [batch=64]
+ *
+ * Items are preallocated and recycled, so the run measures the buffer and not the allocator.
+ * Every 64th item is stamped with its enqueue time to build the latency histogram.
+ */
+public class BufferBenchmark {
+
+    static final class Item {
+        long enqueuedNanos;
+    }
+
+    private static final Item POISON = new Item();
+    private static final int SAMPLE_MASK = 63;
+
+    public static void main(String[] args) throws InterruptedException {
+        int itemsPerProducer = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        String[] kinds = {"abq", "lbq", "spsc", "spsc-spin", "mpmc-park", "mpmc-yield", "mpmc-spin"};
+        int[][] mixes = {{1, 1}, {2, 2}, {4, 4}};
+
+        System.out.printf("items/producer=%d capacity=%d batch=%d cores=%d%n%n", itemsPerProducer, capacity,
+                batch, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-26s %5s %10s %10s %10s%n", "buffer", "PxC", "Mitems/s", "p50 us", "p99 us");
+
+        for (int[] mix : mixes) {
+            for (String kind : kinds) {
+                if (kind.startsWith("spsc") && (mix[0] != 1 || mix[1] != 1)) continue;
+                // one warm-up pass, then the measured one
+                run(Buffer.create(kind, capacity), capacity, mix[0], mix[1], itemsPerProducer / 4, batch, false);
+                run(Buffer.create(kind, capacity), capacity, mix[0], mix[1], itemsPerProducer, batch, true);
+            }
+        }
+    }
+
+    private static void run(Buffer<Item> buffer, int capacity, int producers, int consumers, int itemsPerProducer,
+                            int batch, boolean print) throws InterruptedException {
+        LatencyHistogram latencyNanos = new LatencyHistogram();
+        CountDownLatch producersDone = new CountDownLatch(producers);
+        CountDownLatch consumersDone = new CountDownLatch(consumers);
+        List<Thread> threads = new ArrayList<>();
+
+        // an item can only be reused once the consumer is done with it: at most capacity items sit
+        // in the buffer and batch items in each consumer's hands
+        int poolSize = Integer.highestOneBit(2 * (capacity + consumers * batch + 1));
+
+        for (int p = 0; p < producers; p++) {
+            threads.add(new Thread(() -> {
+                Item[] pool = new Item[poolSize];
+                for (int i = 0; i < poolSize; i++) pool[i] = new Item();
+                try {
+                    for (int i = 0; i < itemsPerProducer; i++) {
+                        Item item = pool[i & (poolSize - 1)];
+                        item.enqueuedNanos = (i & SAMPLE_MASK) == 0 ? System.nanoTime() : 0;
+                        buffer.put(item);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    producersDone.countDown();
+                }
+            }, "producer-" + p));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                List<Item> items = new ArrayList<>(batch);
+                try {
+                    while (true) {
+                        items.clear();
+                        buffer.takeBatch(items, batch);
+                        for (Item item : items) {
+                            if (item == POISON) { // pass it on; one batch must not swallow everyone's marker
+                                buffer.put(POISON);
+                                return;
+                            }
+                            if (item.enqueuedNanos != 0) latencyNanos.record(System.nanoTime() - item.enqueuedNanos);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    consumersDone.countDown();
+                }
+            }, "consumer-" + c));
+        }
+
+        long begin = System.nanoTime();
+        threads.forEach(Thread::start);
+        producersDone.await();
+        buffer.put(POISON);
+        consumersDone.await();
+        long elapsed = System.nanoTime() - begin;
+
+        if (print) {
+            double mItemsPerSec = (double) producers * itemsPerProducer / elapsed * 1e9 / 1e6;
+            System.out.printf("%-26s %2dx%-2d %10.2f %10.1f %10.1f%n", buffer.name(), producers, consumers,
+                    mItemsPerSec, latencyNanos.percentile(50) / 1e3, latencyNanos.percentile(99) / 1e3);
+        }
+        for (Thread t : threads) {
+            t.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package multithreading.buffer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring for any number of producers and consumers (Vyukov's MPMC queue).
+ *
+ * Slots are allocated once. Every slot carries a sequence number that says whose turn it is:
+ * a producer may fill slot {@code pos} when its sequence equals {@code pos}, a consumer may
+ * empty it when the sequence equals {@code pos + 1}. Claiming a position is one CAS on the
+ * shared enqueue or dequeue counter; there are no locks, so a stalled thread never blocks the
+ * others beyond the one slot it holds.
+ */
+public class MpmcRingBuffer<T> implements Buffer<T> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    private final AtomicLong enqueuePos = new AtomicLong();
+    private final AtomicLong dequeuePos = new AtomicLong();
+
+    public MpmcRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1; // next power of two
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /** Non-blocking insert; false when the ring is full. */
+    public boolean offer(T item) {
+        while (true) {
+            long pos = enqueuePos.get();
+            int slot = (int) pos & mask;
+            long dif = sequences.get(slot) - pos;
+            if (dif == 0) {
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    slots[slot] = item;
+                    sequences.lazySet(slot, pos + 1);
+                    return true;
+                }
+            } else if (dif < 0) {
+                return false;
+            }
+            // dif > 0: another producer took this position, reload
+        }
+    }
+
+    /** Non-blocking remove; null when the ring is empty. */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        while (true) {
+            long pos = dequeuePos.get();
+            int slot = (int) pos & mask;
+            long dif = sequences.get(slot) - (pos + 1);
+            if (dif == 0) {
+                if (dequeuePos.compareAndSet(pos, pos + 1)) {
+                    T item = (T) slots[slot];
+                    slots[slot] = null;
+                    sequences.lazySet(slot, pos + mask + 1);
+                    return item;
+                }
+            } else if (dif < 0) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        for (int attempt = 0; !offer(item); attempt++) {
+            waitStrategy.idle(attempt);
+        }
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        T item;
+        for (int attempt = 0; (item = poll()) == null; attempt++) {
+            waitStrategy.idle(attempt);
+        }
+        return item;
+    }
+
+    @Override
+    public int takeBatch(List<? super T> into, int max) throws InterruptedException {
+        into.add(take());
+        int n = 1;
+        T item;
+        while (n < max && (item = poll()) != null) {
+            into.add(item);
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public String name() {
+        return "MpmcRing/" + waitStrategy;
+    }
+}
@@ -0,0 +1,158 @@
+package multithreading.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Producer-consumer exchange split into independent shards, so there is no lock that every
+ * thread goes through.
+ *
+ * An item's key picks its shard ({@code key mod shards}); giving every producer its own key
+ * gives it its own shard. Each shard is a bounded ArrayBlockingQueue with its own lock and is
+ * home to one consumer ({@code shard mod consumers}). A consumer drains a whole batch from one
+ * shard with {@code drainTo}, home shards first, and steals from another shard only when all of
+ * its home shards are empty.
+ *
+ * Per-key order: a consumer claims a shard before draining it and keeps the claim until it asks
+ * for its next batch, i.e. until it has processed the current one. One key lives in one shard
+ * and a shard is processed by one consumer at a time, so a key's items are processed in the
+ * order they were put even when a thief picks up where the home consumer left off.
+ */
+public class ShardedExchange<T> {
+
+    private static final int FREE = -1;
+
+    private final List<ArrayBlockingQueue<T>> shards = new ArrayList<>();
+    // which consumer is currently draining (and processing) each shard
+    private final AtomicIntegerArray claimedBy;
+    private final int consumers;
+    private final WaitStrategy waitStrategy;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+    private volatile boolean closed;
+
+    public ShardedExchange(int shards, int consumers, int capacityPerShard, WaitStrategy waitStrategy) {
+        if (shards < 1 || consumers < 1) throw new IllegalArgumentException("need at least one shard and one consumer");
+        for (int i = 0; i < shards; i++) {
+            this.shards.add(new ArrayBlockingQueue<>(capacityPerShard));
+        }
+        this.claimedBy = new AtomicIntegerArray(shards);
+        for (int i = 0; i < shards; i++) {
+            claimedBy.set(i, FREE);
+        }
+        this.consumers = consumers;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /** Blocks while the key's shard is full. */
+    public void put(int key, T item) throws InterruptedException {
+        if (closed) throw new IllegalStateException("exchange is closed");
+        shards.get(Math.floorMod(key, shards.size())).put(item);
+    }
+
+    /**
+     * No more puts; consumers finish what is queued and then get an empty batch. Call it after
+     * every producer has returned from its last put.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /** The handle consumer {@code id} (0 .. consumers-1) takes its batches through; one thread each. */
+    public Consumer consumer(int id) {
+        if (id < 0 || id >= consumers) throw new IllegalArgumentException("consumer id out of range: " + id);
+        return new Consumer(id);
+    }
+
+    public long batches() {
+        return batches.sum();
+    }
+
+    /** Batches a consumer took from a shard that is not one of its own. */
+    public long steals() {
+        return steals.sum();
+    }
+
+    public String name() {
+        return "Sharded(" + shards.size() + "x ArrayBlockingQueue)";
+    }
+
+    public final class Consumer {
+        private final int id;
+        private int claimed = FREE;
+
+        private Consumer(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Releases the shard of the previous batch, then blocks until some shard has items and
+         * moves up to {@code max} of them from that one shard into {@code into}, oldest first.
+         * Returns the number moved, or 0 once the exchange is closed and every shard is empty.
+         */
+        public int takeBatch(List<? super T> into, int max) throws InterruptedException {
+            release();
+            for (int attempt = 0; ; attempt++) {
+                int n = drainOne(into, max);
+                if (n > 0) return n;
+                if (closed) {
+                    // a put may have landed between the scan and the flag; look once more
+                    n = drainOne(into, max);
+                    if (n > 0 || isEmpty()) return n;
+                }
+                waitStrategy.idle(attempt);
+            }
+        }
+
+        /** Lets other consumers take the shard this consumer is holding. */
+        public void release() {
+            if (claimed != FREE) {
+                claimedBy.set(claimed, FREE);
+                claimed = FREE;
+            }
+        }
+
+        // home shards id, id + consumers, ... first, then every other shard as a thief
+        private int drainOne(List<? super T> into, int max) {
+            int n = shards.size();
+            for (int s = id; s < n; s += consumers) {
+                int moved = drain(s, into, max);
+                if (moved > 0) return moved;
+            }
+            for (int k = 1; k < n; k++) {
+                int s = (id + k) % n;
+                if (s % consumers == id) continue;
+                int moved = drain(s, into, max);
+                if (moved > 0) {
+                    steals.increment();
+                    return moved;
+                }
+            }
+            return 0;
+        }
+
+        private int drain(int shard, List<? super T> into, int max) {
+            ArrayBlockingQueue<T> queue = shards.get(shard);
+            // cheap unlocked peek before the claim CAS, so idle scans do not bounce the claim line
+            if (queue.isEmpty() || !claimedBy.compareAndSet(shard, FREE, id)) return 0;
+            int moved = queue.drainTo(into, max);
+            if (moved == 0) {
+                claimedBy.set(shard, FREE);
+                return 0;
+            }
+            claimed = shard;
+            batches.increment();
+            return moved;
+        }
+    }
+
+    private boolean isEmpty() {
+        for (ArrayBlockingQueue<T> shard : shards) {
+            if (!shard.isEmpty()) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package multithreading.buffer;
+
+import multithreading.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ShardedExchange} against one shared ArrayBlockingQueue, both consumed in drainTo batches,
+ * for growing producer x consumer counts up to twice the core count.
+ *
+ * Usage: ShardedExchangeBenchmark [itemsPerProducer=1000000] [capacity=1024] [batch=64]
+ *
+ * Every producer uses its own key and numbers its items; consumers check that each key's items
+ * are processed in that order and count the ones that are not. The single queue promises no
+ * such thing once two consumers process batches side by side, the exchange does. Items are
+ * preallocated and recycled as in {@link BufferBenchmark}; every 64th is timestamped.
+ */
+public class ShardedExchangeBenchmark {
+
+    static final class Item {
+        int key;
+        long seq;
+        long enqueuedNanos;
+    }
+
+    private static final Item POISON = new Item();
+    private static final int SAMPLE_MASK = 63;
+
+    // what a consumer pulls batches from: a shared queue or its own exchange handle
+    private interface Source {
+        int takeBatch(List<Item> into, int max) throws InterruptedException;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int itemsPerProducer = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("items/producer=%d capacity=%d batch=%d cores=%d%n%n", itemsPerProducer, capacity, batch, cores);
+        System.out.printf("%-30s %5s %10s %10s %10s %9s %8s%n", "exchange", "PxC", "Mitems/s", "p50 us", "p99 us",
+                "reorders", "steals");
+
+        for (int threads = 1; threads <= Math.max(2, cores * 2); threads *= 2) {
+            for (boolean sharded : new boolean[]{false, true}) {
+                run(sharded, threads, threads, itemsPerProducer / 4, capacity, batch, false);
+                run(sharded, threads, threads, itemsPerProducer, capacity, batch, true);
+            }
+        }
+    }
+
+    private static void run(boolean sharded, int producers, int consumers, int itemsPerProducer, int capacity,
+                            int batch, boolean print) throws InterruptedException {
+        // same total capacity for both: one queue of capacity, or one shard of capacity/producers each
+        int perShard = Math.max(batch, capacity / producers);
+        BlockingQueueBuffer<Item> single = sharded ? null
+                : new BlockingQueueBuffer<>("ArrayBlockingQueue", new ArrayBlockingQueue<>(capacity));
+        ShardedExchange<Item> exchange = sharded ? new ShardedExchange<>(producers, consumers, perShard, WaitStrategy.PARK) : null;
+        String name = sharded ? exchange.name() : single.name();
+
+        LatencyHistogram latencyNanos = new LatencyHistogram();
+        AtomicLongArray lastSeq = new AtomicLongArray(producers);
+        LongAdder reorders = new LongAdder();
+        CountDownLatch producersDone = new CountDownLatch(producers);
+        CountDownLatch consumersDone = new CountDownLatch(consumers);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            lastSeq.set(p, -1);
+        }
+
+        int inFlight = sharded ? perShard * producers : capacity;
+        int poolSize = Integer.highestOneBit(2 * (inFlight + consumers * batch + 1));
+
+        for (int p = 0; p < producers; p++) {
+            int key = p;
+            threads.add(new Thread(() -> {
+                Item[] pool = new Item[poolSize];
+                for (int i = 0; i < poolSize; i++) pool[i] = new Item();
+                try {
+                    for (int i = 0; i < itemsPerProducer; i++) {
+                        Item item = pool[i & (poolSize - 1)];
+                        item.key = key;
+                        item.seq = i;
+                        item.enqueuedNanos = (i & SAMPLE_MASK) == 0 ? System.nanoTime() : 0;
+                        if (sharded) exchange.put(key, item);
+                        else single.put(item);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    producersDone.countDown();
+                }
+            }, "producer-" + p));
+        }
+        for (int c = 0; c < consumers; c++) {
+            Source source = sharded ? exchange.consumer(c)::takeBatch : single::takeBatch;
+            threads.add(new Thread(() -> {
+                List<Item> items = new ArrayList<>(batch);
+                try {
+                    while (true) {
+                        items.clear();
+                        if (source.takeBatch(items, batch) == 0) return;
+                        for (Item item : items) {
+                            if (item == POISON) { // pass it on; one batch must not swallow everyone's marker
+                                single.put(POISON);
+                                return;
+                            }
+                            if (lastSeq.getAndSet(item.key, item.seq) > item.seq) reorders.increment();
+                            if (item.enqueuedNanos != 0) latencyNanos.record(System.nanoTime() - item.enqueuedNanos);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    consumersDone.countDown();
+                }
+            }, "consumer-" + c));
+        }
+
+        long begin = System.nanoTime();
+        threads.forEach(Thread::start);
+        producersDone.await();
+        if (sharded) exchange.close();
+        else single.put(POISON);
+        consumersDone.await();
+        long elapsed = System.nanoTime() - begin;
+
+        if (print) {
+            double mItemsPerSec = (double) producers * itemsPerProducer / elapsed * 1e9 / 1e6;
+            System.out.printf("%-30s %2dx%-2d %10.2f %10.1f %10.1f %9d %8s%n", name, producers, consumers,
+                    mItemsPerSec, latencyNanos.percentile(50) / 1e3, latencyNanos.percentile(99) / 1e3,
+                    reorders.sum(), sharded ? String.valueOf(exchange.steals()) : "-");
+        }
+        for (Thread t : threads) {
+            t.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package multithreading.buffer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a ring-buffer producer or consumer does while the ring is full or empty.
+ *
+ * SPIN burns a core for the lowest hand-off latency, YIELD gives the core to other runnable
+ * threads, PARK backs off to short sleeps and is the only sane choice when threads outnumber
+ * cores. All of them spin briefly first, because most waits are over within microseconds.
+ */
+public enum WaitStrategy {
+    SPIN,
+    YIELD,
+    PARK;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = 50_000;
+
+    /** Waits once; {@code attempt} counts consecutive failed tries and selects the back-off. */
+    void idle(int attempt) throws InterruptedException {
+        if (attempt < SPIN_TRIES || this == SPIN) {
+            Thread.onSpinWait();
+            if ((attempt & 0xFFF) == 0xFFF && Thread.interrupted()) throw new InterruptedException();
+            return;
+        }
+        if (this == YIELD || attempt < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+}
@@ -0,0 +1,111 @@
+package multithreading.cluster;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Local multi-process check of the socket transport: starts a {@link Coordinator}, launches
+ * agent JVMs ({@code multithreading.OrchestratorAgent}) against it and waits for the graph.
+ *
+ * Three runs over the same graph: one agent (the whole graph in one process), N agents sharing
+ * it, and N agents with one service's startup made to fail. The first two must finish with
+ * every agent exiting 0 and no ordering violation seen by the coordinator; in the last, every
+ * agent must exit 1. Exits 1 if any of that does not hold.
+ *
+ * Usage: ClusterLauncher [agents=4] [services=400] [threads=4] [layers=8] [maxDeps=2] [seed=7]
+ */
+public class ClusterLauncher {
+
+    public static void main(String[] args) throws Exception {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int layers = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int maxDeps = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 7;
+
+        ServiceGraph graph = ServiceGraph.generate(count, layers, maxDeps, seed);
+        String[] shape = {String.valueOf(count), String.valueOf(layers), String.valueOf(maxDeps), String.valueOf(seed),
+                String.valueOf(threads)};
+        System.out.printf("%d services in %d layers, %d threads per agent%n", count, layers, threads);
+
+        Run single = run(graph, 1, shape, null);
+        Run shared = run(graph, agents, shape, null);
+        // a service in the middle of the graph, owned by the last agent
+        String victim = graph.name(Math.max(0, count / 2 - (count / 2) % agents + agents - 1) % Math.max(1, count));
+        Run failing = run(graph, agents, shape, victim);
+
+        boolean ok = single.succeeded() && shared.succeeded() && failing.failedEverywhere();
+        System.out.printf("%nstartup wall time: 1 agent %dms, %d agents %dms (%.2fx); failure of %s %s%n",
+                single.wallMs, agents, shared.wallMs, (double) single.wallMs / Math.max(1, shared.wallMs),
+                victim, failing.failedEverywhere() ? "stopped every agent" : "was NOT propagated");
+        System.out.println(ok ? "OK" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static Run run(ServiceGraph graph, int agents, String[] shape, String failService) throws Exception {
+        String label = agents + " agent" + (agents == 1 ? "" : "s") + (failService == null ? "" : ", " + failService + " fails");
+        System.out.printf("%n=== %s ===%n", label);
+        Run run = new Run();
+        try (Coordinator coordinator = new Coordinator(graph, agents)) {
+            long begin = System.nanoTime();
+            List<Process> processes = new ArrayList<>();
+            for (int agent = 0; agent < agents; agent++) {
+                processes.add(launch(coordinator.port(), agent, agents, shape, failService));
+            }
+
+            try {
+                System.out.println(coordinator.completion().get(120, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                System.out.printf("[coordinator] %s%n", e.getCause().getMessage());
+            } catch (TimeoutException e) {
+                System.out.println("[coordinator] timed out waiting for the graph");
+            }
+            run.wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+            for (Process p : processes) {
+                if (!p.waitFor(30, TimeUnit.SECONDS)) p.destroyForcibly().waitFor();
+                run.exitCodes.add(p.exitValue());
+            }
+            run.complete = coordinator.completion().isDone() && !coordinator.completion().isCompletedExceptionally();
+            run.violations = coordinator.violations();
+            for (String v : run.violations) System.out.printf("[coordinator] violation: %s%n", v);
+            System.out.printf("[launcher] exit codes %s, %d/%d agents said BYE%n", run.exitCodes,
+                    coordinator.finishedAgents(), agents);
+        }
+        return run;
+    }
+
+    private static Process launch(int port, int agent, int agents, String[] shape, String failService) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        if (failService != null) command.add("-Dorchestrator.fail=" + failService);
+        command.add("multithreading.OrchestratorAgent");
+        command.add(String.valueOf(port));
+        command.add(String.valueOf(agent));
+        command.add(String.valueOf(agents));
+        command.addAll(List.of(shape));
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private static final class Run {
+        long wallMs;
+        boolean complete;
+        List<Integer> exitCodes = new ArrayList<>();
+        List<String> violations = List.of();
+
+        boolean succeeded() {
+            return complete && violations.isEmpty() && exitCodes.stream().allMatch(c -> c == 0);
+        }
+
+        boolean failedEverywhere() {
+            return !complete && exitCodes.stream().allMatch(c -> c == 1);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package multithreading.cluster;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readiness hub for agent processes on one machine. It listens on a loopback port, accepts one
+ * connection per agent (HELLO must carry the same graph fingerprint) and relays every READY and
+ * FAILED event to every agent; an agent that connects late is first sent everything that
+ * happened so far. Each agent therefore sees one global, ordered stream of events.
+ *
+ * The coordinator also checks the protocol from the outside: a READY must come from the
+ * service's owner, only once, and only after all of its dependencies were READY; anything else
+ * is recorded as a violation. {@link #completion()} completes once every service is READY, or
+ * fails with the first FAILED event.
+ */
+public class Coordinator implements AutoCloseable {
+
+    private final class Connection {
+        final SocketChannel channel;
+        int agent = -1;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        // relays come from several reader threads; one frame at a time per connection
+        synchronized void send(ByteBuffer frame) {
+            try {
+                Protocol.write(channel, frame.duplicate());
+            } catch (IOException e) {
+                // the agent went away; its reader thread notices and cleans up
+            }
+        }
+    }
+
+    private final ServiceGraph graph;
+    private final int agents;
+    private final ServerSocketChannel server;
+    private final Thread acceptor;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<Report> completion = new CompletableFuture<>();
+    private final long startNanos = System.nanoTime();
+
+    // guarded by this
+    private final BitSet ready;
+    private final List<ByteBuffer> history = new ArrayList<>();
+    private final List<String> violations = new ArrayList<>();
+    private final int[] readyPerAgent;
+    private long frames;
+    private long bytes;
+    private int byes;
+
+    public Coordinator(ServiceGraph graph, int agents) throws IOException {
+        this.graph = graph;
+        this.agents = agents;
+        this.ready = new BitSet(graph.size());
+        this.readyPerAgent = new int[agents];
+        this.server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        this.acceptor = new Thread(this::accept, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        if (graph.size() == 0) completion.complete(report());
+    }
+
+    public int port() {
+        return ((InetSocketAddress) server.socket().getLocalSocketAddress()).getPort();
+    }
+
+    public CompletableFuture<Report> completion() {
+        return completion;
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SocketChannel ch = server.accept();
+                ch.socket().setTcpNoDelay(true);
+                Connection c = new Connection(ch);
+                Thread reader = new Thread(() -> serve(c), "coordinator-conn");
+                reader.setDaemon(true);
+                reader.start();
+            }
+        } catch (IOException e) {
+            // server closed
+        }
+    }
+
+    private void serve(Connection c) {
+        ByteBuffer length = ByteBuffer.allocate(2);
+        try (SocketChannel ch = c.channel) {
+            ByteBuffer payload;
+            while ((payload = Protocol.read(ch, length)) != null) {
+                byte type = payload.get();
+                synchronized (this) {
+                    frames++;
+                    bytes += 2 + payload.limit();
+                }
+                if (type == Protocol.HELLO) {
+                    if (!hello(c, payload.getInt(), payload.getInt(), payload.getLong())) return;
+                } else if (c.agent < 0) {
+                    c.send(Protocol.reject("HELLO expected"));
+                    return;
+                } else if (type == Protocol.READY) {
+                    onReady(c.agent, payload.getInt(), payload.getInt());
+                } else if (type == Protocol.FAILED) {
+                    int service = payload.getInt();
+                    onFailed(service, Protocol.readUtf(payload));
+                } else if (type == Protocol.BYE) {
+                    synchronized (this) {
+                        byes++;
+                    }
+                    return;
+                } else {
+                    throw new IOException("unknown frame type " + type);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                violations.add("agent " + c.agent + ": " + e);
+            }
+        } finally {
+            connections.remove(c);
+        }
+    }
+
+    private boolean hello(Connection c, int agent, int agentCount, long fingerprint) {
+        String problem = fingerprint != graph.fingerprint() ? "graph fingerprint mismatch"
+                : agentCount != agents ? "expected " + agents + " agents, agent thinks " + agentCount
+                : agent < 0 || agent >= agents ? "agent id out of range: " + agent
+                : null;
+        if (problem != null) {
+            c.send(Protocol.reject(problem));
+            synchronized (this) {
+                violations.add("agent " + agent + " rejected: " + problem);
+            }
+            return false;
+        }
+        // replay under the lock, so no event can slip between the replay and live relaying
+        synchronized (this) {
+            c.agent = agent;
+            for (ByteBuffer event : history) c.send(event);
+            connections.add(c);
+        }
+        return true;
+    }
+
+    private void onReady(int agent, int service, int startupMs) {
+        ByteBuffer event = Protocol.ready(service, startupMs);
+        boolean all;
+        synchronized (this) {
+            if (service < 0 || service >= graph.size()) {
+                violations.add("agent " + agent + " sent READY for unknown service " + service);
+                return;
+            }
+            String name = graph.name(service);
+            if (graph.owner(service, agents) != agent) {
+                violations.add(name + " READY from agent " + agent + ", owned by " + graph.owner(service, agents));
+            }
+            if (ready.get(service)) violations.add(name + " READY twice");
+            for (String dep : graph.dependencies(service)) {
+                if (!ready.get(graph.indexOf(dep))) violations.add(name + " READY before its dependency " + dep);
+            }
+            ready.set(service);
+            readyPerAgent[agent]++;
+            history.add(event);
+            for (Connection c : connections) c.send(event);
+            all = ready.cardinality() == graph.size();
+        }
+        if (all) completion.complete(report());
+    }
+
+    private void onFailed(int service, String reason) {
+        ByteBuffer event = Protocol.failed(service, reason);
+        synchronized (this) {
+            history.add(event);
+            for (Connection c : connections) c.send(event);
+        }
+        String name = service >= 0 && service < graph.size() ? graph.name(service) : "#" + service;
+        completion.completeExceptionally(new IllegalStateException(name + " failed: " + reason));
+    }
+
+    synchronized Report report() {
+        return new Report(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), ready.cardinality(),
+                graph.size(), readyPerAgent.clone(), frames, bytes, new ArrayList<>(violations));
+    }
+
+    /** Violations seen so far, including ones after completion (e.g. an agent dropping mid-frame). */
+    public synchronized List<String> violations() {
+        return new ArrayList<>(violations);
+    }
+
+    /** Agents that said BYE. */
+    public synchronized int finishedAgents() {
+        return byes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Connection c : connections) c.channel.close();
+    }
+
+    public static final class Report {
+        public final long wallMs;
+        public final int ready;
+        public final int services;
+        public final int[] readyPerAgent;
+        public final long frames;
+        public final long bytes;
+        public final List<String> violations;
+
+        Report(long wallMs, int ready, int services, int[] readyPerAgent, long frames, long bytes,
+               List<String> violations) {
+            this.wallMs = wallMs;
+            this.ready = ready;
+            this.services = services;
+            this.readyPerAgent = readyPerAgent;
+            this.frames = frames;
+            this.bytes = bytes;
+            this.violations = violations;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder per = new StringBuilder();
+            for (int n : readyPerAgent) per.append(per.length() == 0 ? "" : "/").append(n);
+            return String.format("[coordinator] %d/%d services READY in %dms (per agent %s), %d frames in, %d bytes, %d violations",
+                    ready, services, wallMs, per, frames, bytes, violations.size());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package multithreading.cluster;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format between agents and the coordinator. Every frame is a u16 payload length followed
+ * by the payload, whose first byte is the frame type; services travel as their graph index.
+ *
+ * <pre>
+ *   HELLO   agent:i32 agents:i32 fingerprint:i64   agent -> coordinator, first frame
+ *   REJECT  reason:utf                             coordinator -> agent, then close
+ *   READY   service:i32 startupMs:i32              both ways; relayed to every agent
+ *   FAILED  service:i32 reason:utf                 both ways; relayed to every agent
+ *   BYE                                            agent -> coordinator, agent is done
+ * </pre>
+ *
+ * utf = u16 length + UTF-8 bytes. A READY frame is 11 bytes on the wire.
+ */
+final class Protocol {
+
+    static final byte HELLO = 1;
+    static final byte REJECT = 2;
+    static final byte READY = 3;
+    static final byte FAILED = 4;
+    static final byte BYE = 5;
+
+    private static final int MAX_FRAME = 0xFFFF;
+
+    private Protocol() {
+    }
+
+    static ByteBuffer hello(int agent, int agents, long fingerprint) {
+        return frame(1 + 4 + 4 + 8).put(HELLO).putInt(agent).putInt(agents).putLong(fingerprint).flip();
+    }
+
+    static ByteBuffer ready(int service, int startupMs) {
+        return frame(1 + 4 + 4).put(READY).putInt(service).putInt(startupMs).flip();
+    }
+
+    static ByteBuffer failed(int service, String reason) {
+        byte[] utf = utf(reason);
+        return frame(1 + 4 + 2 + utf.length).put(FAILED).putInt(service).putShort((short) utf.length).put(utf).flip();
+    }
+
+    static ByteBuffer reject(String reason) {
+        byte[] utf = utf(reason);
+        return frame(1 + 2 + utf.length).put(REJECT).putShort((short) utf.length).put(utf).flip();
+    }
+
+    static ByteBuffer bye() {
+        return frame(1).put(BYE).flip();
+    }
+
+    static String readUtf(ByteBuffer payload) {
+        byte[] utf = new byte[Short.toUnsignedInt(payload.getShort())];
+        payload.get(utf);
+        return new String(utf, StandardCharsets.UTF_8);
+    }
+
+    /** Reads one frame and returns its payload (type byte first), or null at a clean end of stream. */
+    static ByteBuffer read(ReadableByteChannel ch, ByteBuffer lengthBuf) throws IOException {
+        lengthBuf.clear();
+        if (!fill(ch, lengthBuf, true)) return null;
+        int length = Short.toUnsignedInt(lengthBuf.getShort(0));
+        if (length == 0) throw new IOException("empty frame");
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        fill(ch, payload, false);
+        return payload.flip();
+    }
+
+    static void write(WritableByteChannel ch, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) ch.write(frame);
+    }
+
+    private static boolean fill(ReadableByteChannel ch, ByteBuffer buf, boolean endAllowed) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf) < 0) {
+                if (endAllowed && buf.position() == 0) return false;
+                throw new EOFException("connection closed mid-frame");
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer frame(int payload) {
+        return ByteBuffer.allocate(2 + payload).putShort((short) payload);
+    }
+
+    private static byte[] utf(String s) {
+        byte[] utf = s.getBytes(StandardCharsets.UTF_8);
+        if (utf.length > MAX_FRAME - 16) {
+            return new String(utf, 0, MAX_FRAME - 16, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+        }
+        return utf;
+    }
+}
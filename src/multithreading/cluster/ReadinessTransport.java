@@ -0,0 +1,62 @@
+package multithreading.cluster;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * How services announce that they are READY (or failed to start) and how schedulers learn
+ * about it. Within one JVM that is a direct callback ({@link #inMemory()}); across processes it
+ * is a {@link SocketTransport} to a {@link Coordinator}, which relays every event to every agent.
+ * Either way a scheduler reacts to events only, never to where the service ran.
+ */
+public interface ReadinessTransport extends AutoCloseable {
+
+    interface Listener {
+        void ready(String service);
+
+        void failed(String service, String reason);
+    }
+
+    /** {@code startupMs} is what the startup measured, for the coordinator's report. */
+    void publishReady(String service, long startupMs);
+
+    void publishFailed(String service, String reason);
+
+    void listen(Listener listener);
+
+    /** True if listeners have seen an event by the time the publish call returns. */
+    default boolean isSynchronous() {
+        return false;
+    }
+
+    @Override
+    default void close() {
+    }
+
+    /** Delivers every event synchronously, on the publishing thread, to every listener. */
+    static ReadinessTransport inMemory() {
+        return new ReadinessTransport() {
+            private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+            @Override
+            public void publishReady(String service, long startupMs) {
+                for (Listener l : listeners) l.ready(service);
+            }
+
+            @Override
+            public void publishFailed(String service, String reason) {
+                for (Listener l : listeners) l.failed(service, reason);
+            }
+
+            @Override
+            public void listen(Listener listener) {
+                listeners.add(listener);
+            }
+
+            @Override
+            public boolean isSynchronous() {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package multithreading.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A generated, layered service dependency graph that every process can rebuild from the same
+ * four numbers, so agents and the coordinator agree on it without shipping it around; services
+ * are addressed by index on the wire and {@link #fingerprint()} catches mismatched parameters.
+ * Service i in layer k depends on up to {@code maxDeps} random services of layer k-1.
+ */
+public final class ServiceGraph {
+
+    private final List<String> names;
+    private final List<List<String>> dependencies;
+    private final int[] startupMs;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final long fingerprint;
+
+    private ServiceGraph(List<String> names, List<List<String>> dependencies, int[] startupMs) {
+        this.names = names;
+        this.dependencies = dependencies;
+        this.startupMs = startupMs;
+        long h = 1125899906842597L;
+        for (int i = 0; i < names.size(); i++) {
+            index.put(names.get(i), i);
+            h = 31 * h + names.get(i).hashCode();
+            h = 31 * h + dependencies.get(i).hashCode();
+            h = 31 * h + startupMs[i];
+        }
+        this.fingerprint = h;
+    }
+
+    public static ServiceGraph generate(int count, int layers, int maxDeps, long seed) {
+        Random random = new Random(seed);
+        List<String> names = new ArrayList<>(count);
+        List<List<String>> dependencies = new ArrayList<>(count);
+        int perLayer = Math.max(1, (count + layers - 1) / layers);
+        for (int i = 0; i < count; i++) {
+            int layer = i / perLayer;
+            List<String> d = new ArrayList<>();
+            if (layer > 0) {
+                int from = (layer - 1) * perLayer;
+                int n = random.nextInt(maxDeps + 1);
+                for (int k = 0; k < n; k++) {
+                    String dep = "svc-" + (from + random.nextInt(perLayer));
+                    if (!d.contains(dep)) d.add(dep);
+                }
+            }
+            names.add("svc-" + i);
+            dependencies.add(Collections.unmodifiableList(d));
+        }
+        // startup times from their own stream, so the graph shape does not depend on them
+        Random durations = new Random(seed ^ 0x5DEECE66DL);
+        int[] startupMs = new int[count];
+        for (int i = 0; i < count; i++) {
+            startupMs[i] = 20 + durations.nextInt(60);
+        }
+        return new ServiceGraph(names, dependencies, startupMs);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public String name(int i) {
+        return names.get(i);
+    }
+
+    /** Index of {@code name}, or -1 if it is not part of the graph. */
+    public int indexOf(String name) {
+        Integer i = index.get(name);
+        return i == null ? -1 : i;
+    }
+
+    public List<String> dependencies(int i) {
+        return dependencies.get(i);
+    }
+
+    public int startupMs(int i) {
+        return startupMs[i];
+    }
+
+    /** Which of {@code agents} agents starts service {@code i}: round-robin, so every layer is spread. */
+    public int owner(int i, int agents) {
+        return i % agents;
+    }
+
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /** name -> dependencies, in index order. */
+    public Map<String, List<String>> toMap() {
+        Map<String, List<String>> deps = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            deps.put(names.get(i), dependencies.get(i));
+        }
+        return deps;
+    }
+}
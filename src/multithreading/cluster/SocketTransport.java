@@ -0,0 +1,119 @@
+package multithreading.cluster;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An agent's connection to the {@link Coordinator}. Publishing writes one frame; events come
+ * back on a single reader thread, in the coordinator's global order (including the agent's own
+ * READY events, which a scheduler should treat like anyone else's), and are handed to the
+ * listeners on that thread.
+ */
+public class SocketTransport implements ReadinessTransport {
+
+    private final SocketChannel channel;
+    private final ServiceGraph graph;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread reader;
+    private volatile boolean closing;
+
+    private SocketTransport(SocketChannel channel, ServiceGraph graph, int agent) {
+        this.channel = channel;
+        this.graph = graph;
+        this.reader = new Thread(this::read, "agent-" + agent + "-events");
+        reader.setDaemon(true);
+    }
+
+    /** Connects to a coordinator on the loopback interface and introduces this agent. */
+    public static SocketTransport connect(int port, int agent, int agents, ServiceGraph graph) throws IOException {
+        SocketChannel ch = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        ch.socket().setTcpNoDelay(true);
+        SocketTransport transport = new SocketTransport(ch, graph, agent);
+        transport.send(Protocol.hello(agent, agents, graph.fingerprint()));
+        transport.reader.start();
+        return transport;
+    }
+
+    @Override
+    public void publishReady(String service, long startupMs) {
+        send(Protocol.ready(graph.indexOf(service), (int) Math.min(Integer.MAX_VALUE, startupMs)));
+    }
+
+    @Override
+    public void publishFailed(String service, String reason) {
+        send(Protocol.failed(graph.indexOf(service), reason));
+    }
+
+    /** Register before starting anything: events that arrive with no listener are dropped. */
+    @Override
+    public void listen(Listener listener) {
+        listeners.add(listener);
+    }
+
+    private synchronized void send(ByteBuffer frame) {
+        try {
+            Protocol.write(channel, frame);
+        } catch (IOException e) {
+            throw new UncheckedIOException("coordinator connection lost", e);
+        }
+    }
+
+    private void read() {
+        ByteBuffer length = ByteBuffer.allocate(2);
+        String lost = "coordinator closed the connection";
+        try {
+            ByteBuffer payload;
+            while ((payload = Protocol.read(channel, length)) != null) {
+                byte type = payload.get();
+                if (type == Protocol.READY) {
+                    String service = graph.name(payload.getInt());
+                    for (Listener l : listeners) l.ready(service);
+                } else if (type == Protocol.FAILED) {
+                    String service = graph.name(payload.getInt());
+                    String reason = Protocol.readUtf(payload);
+                    for (Listener l : listeners) l.failed(service, reason);
+                } else if (type == Protocol.REJECT) {
+                    lost = "rejected by coordinator: " + Protocol.readUtf(payload);
+                    break;
+                } else {
+                    lost = "unexpected frame type " + type;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            lost = "coordinator connection lost: " + e;
+        }
+        // nobody can become READY any more; fail whatever is still waiting
+        if (!closing) {
+            for (Listener l : listeners) l.failed("coordinator", lost);
+        }
+    }
+
+    /** Says BYE and closes the connection; the reader thread ends with it. */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            send(Protocol.bye());
+            channel.shutdownOutput();
+        } catch (IOException | UncheckedIOException e) {
+            // already gone
+        }
+        try {
+            reader.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package multithreading.download;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Additive-increase / multiplicative-decrease limit on the number of chunks in flight.
+ *
+ * Completions are grouped into windows of {@code limit} chunks (about one round of every slot).
+ * At the end of a clean window the limit goes up by one as long as the last increase paid off,
+ * i.e. goodput rose by at least {@code gainThreshold}; once it stops rising the limit holds, and
+ * if goodput fell after an increase the increase is taken back. An error (failed request,
+ * checksum mismatch, 503) halves the limit straight away, at most once per window, so a burst
+ * of failures from one overload does not collapse it to the minimum. The result: concurrency
+ * settles just where more connections stop adding throughput, without hand-picking a count.
+ */
+public class AimdController {
+
+    private final int min;
+    private final int max;
+    private final double gainThreshold;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFree = lock.newCondition();
+
+    // guarded by lock
+    private int limit;
+    private int inFlight;
+    private int windowChunks;
+    private long windowBytes;
+    private long windowStartNanos = System.nanoTime();
+    private boolean windowHadError;
+    private double lastGoodput;
+    private boolean lastWasIncrease;
+    private int increases;
+    private int decreases;
+    private int peakLimit;
+
+    public AimdController(int initial, int min, int max, double gainThreshold) {
+        if (min < 1 || initial < min || max < initial) {
+            throw new IllegalArgumentException("need 1 <= min <= initial <= max");
+        }
+        this.min = min;
+        this.max = max;
+        this.gainThreshold = gainThreshold;
+        this.limit = initial;
+        this.peakLimit = initial;
+    }
+
+    /** Starts at 2, between 1 and {@code max}, increases must gain 5%. */
+    public AimdController(int max) {
+        this(Math.min(2, max), 1, max, 0.05);
+    }
+
+    /** A controller that never moves: exactly {@code n} in flight. */
+    public static AimdController fixed(int n) {
+        return new AimdController(n, n, n, 0);
+    }
+
+    public int max() {
+        return max;
+    }
+
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) slotFree.await();
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotFree.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(long bytes) {
+        lock.lock();
+        try {
+            windowChunks++;
+            windowBytes += bytes;
+            if (windowChunks < limit) return;
+
+            long now = System.nanoTime();
+            double goodput = windowBytes * 1e9 / Math.max(1, now - windowStartNanos);
+            if (!windowHadError) {
+                if (lastWasIncrease && goodput < lastGoodput * (1 - gainThreshold)) {
+                    setLimit(limit - 1); // the extra connection made things worse
+                    lastWasIncrease = false;
+                } else if (lastGoodput == 0 || !lastWasIncrease || goodput >= lastGoodput * (1 + gainThreshold)) {
+                    lastWasIncrease = setLimit(limit + 1);
+                } else {
+                    lastWasIncrease = false; // plateau: hold until the next window shows otherwise
+                }
+            }
+            lastGoodput = goodput;
+            windowChunks = 0;
+            windowBytes = 0;
+            windowStartNanos = now;
+            windowHadError = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onError() {
+        lock.lock();
+        try {
+            if (windowHadError) return;
+            windowHadError = true;
+            lastWasIncrease = false;
+            setLimit(limit / 2);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // returns true if the limit went up
+    private boolean setLimit(int next) {
+        next = Math.max(min, Math.min(max, next));
+        if (next > limit) increases++;
+        if (next < limit) decreases++;
+        boolean up = next > limit;
+        limit = next;
+        peakLimit = Math.max(peakLimit, limit);
+        slotFree.signalAll();
+        return up;
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("limit=%d (peak %d, %d..%d), %d increases, %d decreases, last goodput %.1f MB/s",
+                    limit, peakLimit, min, max, increases, decreases, lastGoodput / 1048576);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package multithreading.download;
+
+import multithreading.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress metrics for downloads, cheap enough for the per-chunk hot path.
+ *
+ * Workers only touch striped {@link LongAdder}s and a lock-free histogram; nothing on the hot
+ * path prints, allocates or takes a lock. Rolling throughput, ETA and the per-file breakdown
+ * are computed off the hot path when a {@link Snapshot} is taken, and periodic snapshots are
+ * pushed to a pluggable {@link MetricsSink}.
+ */
+public class DownloadMetrics {
+
+    /** Per-file handle; look it up once per file, then call {@link #chunkDone} per chunk. */
+    public final class FileMetrics {
+        final String name;
+        final long expectedBytes;
+        final int expectedChunks;
+        final long beginNanos = System.nanoTime();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder chunks = new LongAdder();
+        final AtomicBoolean completed = new AtomicBoolean();
+
+        FileMetrics(String name, long expectedBytes, int expectedChunks) {
+            this.name = name;
+            this.expectedBytes = expectedBytes;
+            this.expectedChunks = expectedChunks;
+        }
+
+        public void chunkDone(long chunkBytes, long latencyNanos) {
+            bytes.add(chunkBytes);
+            chunks.increment();
+            totalBytes.add(chunkBytes);
+            totalChunks.increment();
+            chunkLatencyMicros.record(latencyNanos / 1_000);
+            if (chunks.sum() == expectedChunks && sink != null && completed.compareAndSet(false, true)) {
+                sink.fileCompleted(name, bytes.sum(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - beginNanos));
+            }
+        }
+    }
+
+    public static final class FileProgress {
+        public final String name;
+        public final long bytes;
+        public final long expectedBytes;
+        public final long chunks;
+        public final int expectedChunks;
+
+        FileProgress(FileMetrics f) {
+            this.name = f.name;
+            this.bytes = f.bytes.sum();
+            this.expectedBytes = f.expectedBytes;
+            this.chunks = f.chunks.sum();
+            this.expectedChunks = f.expectedChunks;
+        }
+    }
+
+    public static final class Snapshot {
+        public final long elapsedMs;
+        public final long bytes;
+        public final long expectedBytes;
+        public final long chunks;
+        public final double bytesPerSecond;
+        public final long etaMs;
+        public final long chunkP50Micros;
+        public final long chunkP99Micros;
+        public final List<FileProgress> files;
+
+        Snapshot(long elapsedMs, long bytes, long expectedBytes, long chunks, double bytesPerSecond,
+                 long etaMs, long chunkP50Micros, long chunkP99Micros, List<FileProgress> files) {
+            this.elapsedMs = elapsedMs;
+            this.bytes = bytes;
+            this.expectedBytes = expectedBytes;
+            this.chunks = chunks;
+            this.bytesPerSecond = bytesPerSecond;
+            this.etaMs = etaMs;
+            this.chunkP50Micros = chunkP50Micros;
+            this.chunkP99Micros = chunkP99Micros;
+            this.files = files;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d KB, %d chunks, %.1f KB/s, ETA %s, chunk p50=%dms p99=%dms",
+                    bytes >> 10, expectedBytes >> 10, chunks, bytesPerSecond / 1024,
+                    etaMs < 0 ? "?" : etaMs + "ms", chunkP50Micros / 1000, chunkP99Micros / 1000);
+        }
+    }
+
+    // samples kept for the rolling throughput window (one per snapshot)
+    private static final int WINDOW = 8;
+
+    private final List<FileMetrics> files = new CopyOnWriteArrayList<>();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder totalChunks = new LongAdder();
+    private final LatencyHistogram chunkLatencyMicros = new LatencyHistogram();
+    private final long beginNanos = System.nanoTime();
+
+    // rolling window, guarded by this (only touched when snapshotting)
+    private final long[] sampleNanos = new long[WINDOW];
+    private final long[] sampleBytes = new long[WINDOW];
+    private int samples;
+
+    private volatile MetricsSink sink;
+    private ScheduledExecutorService reporter;
+
+    public FileMetrics register(String name, long expectedBytes, int expectedChunks) {
+        FileMetrics f = new FileMetrics(name, expectedBytes, expectedChunks);
+        files.add(f);
+        return f;
+    }
+
+    public LatencyHistogram chunkLatencyMicros() {
+        return chunkLatencyMicros;
+    }
+
+    public synchronized Snapshot snapshot() {
+        long now = System.nanoTime();
+        long bytes = totalBytes.sum();
+
+        int slot = samples % WINDOW;
+        sampleNanos[slot] = now;
+        sampleBytes[slot] = bytes;
+        samples++;
+        int oldest = samples <= WINDOW ? 0 : samples % WINDOW;
+        long dtNanos = now - (samples == 1 ? beginNanos : sampleNanos[oldest]);
+        long dBytes = bytes - (samples == 1 ? 0 : sampleBytes[oldest]);
+        double bytesPerSecond = dtNanos <= 0 ? 0 : dBytes * 1e9 / dtNanos;
+
+        long expected = 0;
+        List<FileProgress> progress = new ArrayList<>(files.size());
+        for (FileMetrics f : files) {
+            expected += f.expectedBytes;
+            progress.add(new FileProgress(f));
+        }
+        long etaMs = bytesPerSecond <= 0 ? -1 : (long) ((expected - bytes) * 1000 / bytesPerSecond);
+
+        return new Snapshot(TimeUnit.NANOSECONDS.toMillis(now - beginNanos), bytes, expected,
+                totalChunks.sum(), bytesPerSecond, etaMs,
+                chunkLatencyMicros.percentile(50), chunkLatencyMicros.percentile(99), progress);
+    }
+
+    /** Publishes a snapshot to {@code sink} every {@code periodMs} until {@link #stopReporting()}. */
+    public synchronized void startReporting(MetricsSink sink, long periodMs) {
+        this.sink = sink;
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> sink.snapshot(snapshot()), periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops periodic reporting and publishes one final snapshot. */
+    public void stopReporting() {
+        ScheduledExecutorService r;
+        MetricsSink s;
+        synchronized (this) {
+            r = reporter;
+            s = sink;
+            reporter = null;
+        }
+        if (r == null) return;
+        r.shutdownNow();
+        s.snapshot(snapshot());
+        s.close();
+    }
+}
@@ -0,0 +1,92 @@
+package multithreading.download;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Sidecar file recording which chunks of a download are already on disk, so an interrupted
+ * download resumes where it stopped.
+ *
+ * Layout: magic, file size, chunk size, chunk count, then one bit per chunk. A chunk's bit is
+ * written only after its bytes have been forced to the data file.
+ */
+class DownloadState implements AutoCloseable {
+
+    private static final int MAGIC = 0x444C5354; // "DLST"
+    private static final int HEADER_BYTES = 4 + 8 + 4 + 4;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final BitSet done;
+    private final int chunks;
+
+    private DownloadState(Path path, FileChannel channel, BitSet done, int chunks) {
+        this.path = path;
+        this.channel = channel;
+        this.done = done;
+        this.chunks = chunks;
+    }
+
+    /** Loads the state if it matches this size/chunking, otherwise starts a fresh one. */
+    static DownloadState open(Path path, long size, int chunkSize) throws IOException {
+        int chunks = (int) ((size + chunkSize - 1) / chunkSize);
+        int bitmapBytes = (chunks + 7) / 8;
+
+        if (Files.exists(path) && Files.size(path) == HEADER_BYTES + bitmapBytes) {
+            FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + bitmapBytes);
+            while (buf.hasRemaining() && ch.read(buf, buf.position()) > 0) { }
+            buf.flip();
+            if (buf.getInt() == MAGIC && buf.getLong() == size && buf.getInt() == chunkSize && buf.getInt() == chunks) {
+                return new DownloadState(path, ch, BitSet.valueOf(buf.slice()), chunks);
+            }
+            ch.close();
+        }
+
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + bitmapBytes);
+        header.putInt(MAGIC).putLong(size).putInt(chunkSize).putInt(chunks).position(0);
+        ch.write(header, 0);
+        return new DownloadState(path, ch, new BitSet(chunks), chunks);
+    }
+
+    synchronized boolean isDone(int chunk) {
+        return done.get(chunk);
+    }
+
+    synchronized int completed() {
+        return done.cardinality();
+    }
+
+    int chunks() {
+        return chunks;
+    }
+
+    // Bits of one byte may belong to chunks finished by different workers, hence synchronized
+    synchronized void markDone(int chunk) throws IOException {
+        done.set(chunk);
+        int byteIndex = chunk / 8;
+        int value = 0;
+        for (int b = 0; b < 8; b++) {
+            if (done.get(byteIndex * 8 + b)) value |= 1 << b;
+        }
+        channel.write(ByteBuffer.wrap(new byte[]{(byte) value}), HEADER_BYTES + byteIndex);
+    }
+
+    /** Removes the sidecar once every chunk is on disk. */
+    void complete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,89 @@
+package multithreading.download;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Destination for download progress. Implementations may be slow (console, files, network);
+ * wrap them in {@link #async} so workers and the reporter never wait on them.
+ */
+public interface MetricsSink extends AutoCloseable {
+
+    void snapshot(DownloadMetrics.Snapshot snapshot);
+
+    default void fileCompleted(String file, long bytes, long elapsedMs) {
+    }
+
+    @Override
+    default void close() {
+    }
+
+    /** Prints snapshots and completions to System.out. */
+    static MetricsSink console() {
+        return new MetricsSink() {
+            @Override
+            public void snapshot(DownloadMetrics.Snapshot s) {
+                System.out.println("Progress : " + s);
+            }
+
+            @Override
+            public void fileCompleted(String file, long bytes, long elapsedMs) {
+                System.out.printf("completed %s (%d KB in %dms)%n", file, bytes >> 10, elapsedMs);
+            }
+        };
+    }
+
+    /**
+     * Hands every call to a bounded queue drained by one daemon thread. Calls never block: when
+     * the queue is full the event is dropped and counted, which is the right trade for progress
+     * output.
+     */
+    static MetricsSink async(MetricsSink delegate, int capacity) {
+        return new MetricsSink() {
+            private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(capacity);
+            private final LongAdder dropped = new LongAdder();
+            private final Thread drainer = new Thread(this::drain, "metrics-sink");
+
+            {
+                drainer.setDaemon(true);
+                drainer.start();
+            }
+
+            private void drain() {
+                try {
+                    while (true) {
+                        queue.take().run();
+                    }
+                } catch (InterruptedException e) {
+                    // close(): flush what is left and exit
+                    Runnable r;
+                    while ((r = queue.poll()) != null) r.run();
+                }
+            }
+
+            @Override
+            public void snapshot(DownloadMetrics.Snapshot s) {
+                if (!queue.offer(() -> delegate.snapshot(s))) dropped.increment();
+            }
+
+            @Override
+            public void fileCompleted(String file, long bytes, long elapsedMs) {
+                if (!queue.offer(() -> delegate.fileCompleted(file, bytes, elapsedMs))) dropped.increment();
+            }
+
+            @Override
+            public void close() {
+                drainer.interrupt();
+                try {
+                    drainer.join(TimeUnit.SECONDS.toMillis(1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (dropped.sum() > 0) System.out.printf("(metrics sink dropped %d events)%n", dropped.sum());
+                delegate.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,153 @@
+package multithreading.download;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.Checksum;
+
+/**
+ * Minimal HTTP/1.1 client for byte-range GETs, built directly on {@link SocketChannel}.
+ *
+ * The response body is read from the socket straight into the caller's buffer (typically a
+ * slice of a {@code MappedByteBuffer}), so chunk data never passes through a heap array. Only
+ * plain http with a {@code Content-Length} response is supported, which is what range
+ * responses from the stub server and common origins use.
+ */
+public class RangeClient {
+
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+
+    private final int connectTimeoutMs;
+
+    public RangeClient(int connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    public RangeClient() {
+        this(5_000);
+    }
+
+    /** Total size of the resource, taken from the Content-Range of a one-byte range request. */
+    public long size(URI uri) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        Response r = get(uri, 0, 0, one);
+        if (r.totalSize < 0) {
+            throw new IOException("server did not return Content-Range for " + uri);
+        }
+        return r.totalSize;
+    }
+
+    /** Fetches bytes [offset, offset + target.remaining()) into {@code target}. */
+    public void fetch(URI uri, long offset, ByteBuffer target) throws IOException {
+        fetch(uri, offset, target, null);
+    }
+
+    /**
+     * Like {@link #fetch(URI, long, ByteBuffer)}, and feeds every received segment to
+     * {@code checksum} as it lands, so verification overlaps the transfer instead of re-reading
+     * the chunk afterwards. Returns the CRC32C the server announced in
+     * {@code X-Checksum-CRC32C}, or -1 if it sent none.
+     */
+    public long fetch(URI uri, long offset, ByteBuffer target, Checksum checksum) throws IOException {
+        int length = target.remaining();
+        Response r = get(uri, offset, offset + length - 1, target, checksum);
+        if (r.status != 206) {
+            throw new IOException("expected 206 for range request, got " + r.status + " from " + uri);
+        }
+        return r.crc32c;
+    }
+
+    private static final class Response {
+        int status;
+        long contentLength = -1;
+        long totalSize = -1;
+        long crc32c = -1;
+    }
+
+    private Response get(URI uri, long from, long to, ByteBuffer target) throws IOException {
+        return get(uri, from, to, target, null);
+    }
+
+    private Response get(URI uri, long from, long to, ByteBuffer target, Checksum checksum) throws IOException {
+        int port = uri.getPort() == -1 ? 80 : uri.getPort();
+        try (SocketChannel ch = SocketChannel.open()) {
+            ch.socket().connect(new InetSocketAddress(uri.getHost(), port), connectTimeoutMs);
+
+            String request = "GET " + uri.getRawPath() + " HTTP/1.1\r\n"
+                    + "Host: " + uri.getHost() + ":" + port + "\r\n"
+                    + "Range: bytes=" + from + "-" + to + "\r\n"
+                    + "Connection: close\r\n\r\n";
+            ByteBuffer req = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+            while (req.hasRemaining()) ch.write(req);
+
+            // read until the end of the headers; anything past them is the start of the body
+            ByteBuffer head = ByteBuffer.allocate(MAX_HEADER_BYTES);
+            int headerEnd;
+            while ((headerEnd = headerEnd(head)) < 0) {
+                if (!head.hasRemaining()) throw new IOException("response headers too large from " + uri);
+                if (ch.read(head) < 0) throw new IOException("connection closed before headers from " + uri);
+            }
+
+            Response r = parseHeaders(new String(head.array(), 0, headerEnd, StandardCharsets.ISO_8859_1));
+            if (r.status != 200 && r.status != 206) {
+                throw new IOException("HTTP " + r.status + " from " + uri);
+            }
+            if (r.contentLength != target.remaining()) {
+                throw new IOException("expected " + target.remaining() + " bytes, server sent " + r.contentLength);
+            }
+
+            head.flip().position(headerEnd + 4);
+            int seen = target.position();
+            target.put(head);
+            while (true) {
+                if (checksum != null && target.position() > seen) {
+                    ByteBuffer segment = target.duplicate();
+                    segment.position(seen).limit(target.position());
+                    checksum.update(segment);
+                    seen = target.position();
+                }
+                if (!target.hasRemaining()) break;
+                if (ch.read(target) < 0) throw new IOException("connection closed mid-body from " + uri);
+            }
+            return r;
+        }
+    }
+
+    private static int headerEnd(ByteBuffer head) {
+        byte[] a = head.array();
+        for (int i = 3; i < head.position(); i++) {
+            if (a[i - 3] == '\r' && a[i - 2] == '\n' && a[i - 1] == '\r' && a[i] == '\n') return i - 3;
+        }
+        return -1;
+    }
+
+    private static Response parseHeaders(String headers) throws IOException {
+        String[] lines = headers.split("\r\n");
+        String[] statusLine = lines[0].split(" ");
+        if (statusLine.length < 2) throw new IOException("bad status line: " + lines[0]);
+
+        Response r = new Response();
+        r.status = Integer.parseInt(statusLine[1]);
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon < 0) continue;
+            String key = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = lines[i].substring(colon + 1).trim();
+            if (key.equals("content-length")) {
+                r.contentLength = Long.parseLong(value);
+            } else if (key.equals("content-range")) {
+                // bytes a-b/total
+                r.totalSize = Long.parseLong(value.substring(value.lastIndexOf('/') + 1));
+            } else if (key.equals("x-checksum-crc32c")) {
+                r.crc32c = Long.parseLong(value, 16);
+            } else if (key.equals("transfer-encoding")) {
+                throw new IOException("chunked transfer encoding is not supported");
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,312 @@
+package multithreading.download;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32C;
+
+/**
+ * Parallel segmented downloader.
+ *
+ * Every file is split into fixed-size chunks that are fetched with HTTP range requests and
+ * written straight into a memory-mapped region of the preallocated output file. Each worker owns
+ * a deque of chunks (files are dealt out round-robin); a worker whose deque runs dry steals from
+ * the tail of another worker's deque, so one slow or large file is spread over all workers
+ * instead of holding the batch back. Progress is persisted in a {@link DownloadState} sidecar
+ * and already-downloaded chunks are skipped on the next run.
+ *
+ * A failed chunk (I/O error, HTTP error, short body, CRC32C mismatch) is retried on its own with
+ * exponential backoff and full jitter; only a chunk that fails {@code maxAttempts} times fails
+ * the download. The size probe that starts every file is retried the same way. The CRC32C is computed while the bytes arrive and a chunk is only marked done
+ * once it matches the checksum the server announced. How many chunks are in flight is decided
+ * by an {@link AimdController}: the downloader runs {@code controller.max()} workers, each takes
+ * a slot from the controller before fetching, and every success or error feeds back into it.
+ */
+public class SegmentedDownloader {
+
+    public static final class Result {
+        public final String name;
+        public final long size;
+        public final int chunksFetched;
+        public final int chunksResumed;
+        public final int retries;
+        public final long elapsedMs;
+
+        Result(String name, long size, int chunksFetched, int chunksResumed, int retries, long elapsedMs) {
+            this.name = name;
+            this.size = size;
+            this.chunksFetched = chunksFetched;
+            this.chunksResumed = chunksResumed;
+            this.retries = retries;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d bytes, %d chunks fetched, %d resumed, %d retries, %dms",
+                    name, size, chunksFetched, chunksResumed, retries, elapsedMs);
+        }
+    }
+
+    private static final class FileJob {
+        final String name;
+        final URI uri;
+        final long size;
+        final FileChannel channel;
+        final DownloadState state;
+        final AtomicInteger remaining;
+        final AtomicInteger fetched = new AtomicInteger();
+        final AtomicInteger retries = new AtomicInteger();
+        final int resumed;
+        final long beginNanos = System.nanoTime();
+        final DownloadMetrics.FileMetrics metrics;
+        volatile long endNanos;
+
+        FileJob(String name, URI uri, long size, FileChannel channel, DownloadState state,
+                DownloadMetrics.FileMetrics metrics) {
+            this.name = name;
+            this.uri = uri;
+            this.size = size;
+            this.channel = channel;
+            this.state = state;
+            this.metrics = metrics;
+            this.resumed = state.completed();
+            this.remaining = new AtomicInteger(state.chunks() - resumed);
+        }
+    }
+
+    private static final class Chunk {
+        final FileJob job;
+        final int index;
+        final long offset;
+        final int length;
+        int attempts; // only touched by the worker currently holding the chunk
+
+        Chunk(FileJob job, int index, long offset, int length) {
+            this.job = job;
+            this.index = index;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 4;
+    private static final long BACKOFF_BASE_MS = 50;
+    private static final long BACKOFF_CAP_MS = 2_000;
+
+    private final RangeClient client;
+    private final Executor executor;
+    private final int workers;
+    private final int chunkSize;
+    private final DownloadMetrics metrics;
+    private final AimdController controller;
+    private final int maxAttempts;
+
+    /** {@code executor} must be able to run {@code controller.max()} workers at once. */
+    public SegmentedDownloader(RangeClient client, Executor executor, int chunkSize, DownloadMetrics metrics,
+                               AimdController controller, int maxAttempts) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be >= 1");
+        this.client = client;
+        this.executor = executor;
+        this.workers = controller.max();
+        this.chunkSize = chunkSize;
+        this.metrics = metrics;
+        this.controller = controller;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public SegmentedDownloader(RangeClient client, Executor executor, int workers, int chunkSize,
+                               DownloadMetrics metrics) {
+        this(client, executor, chunkSize, metrics, AimdController.fixed(workers), DEFAULT_MAX_ATTEMPTS);
+    }
+
+    public SegmentedDownloader(RangeClient client, Executor executor, int workers, int chunkSize) {
+        this(client, executor, workers, chunkSize, new DownloadMetrics());
+    }
+
+    /** Downloads every {@code name -> uri} into {@code dir}/name; throws on the first failed chunk. */
+    public List<Result> download(Map<String, URI> targets, Path dir) throws IOException, InterruptedException {
+        List<FileJob> jobs = new ArrayList<>();
+        List<ConcurrentLinkedDeque<Chunk>> deques = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            deques.add(new ConcurrentLinkedDeque<>());
+        }
+
+        try {
+            int owner = 0;
+            for (Map.Entry<String, URI> t : targets.entrySet()) {
+                FileJob job = prepare(t.getKey(), t.getValue(), dir);
+                jobs.add(job);
+                ConcurrentLinkedDeque<Chunk> deque = deques.get(owner++ % workers);
+                for (int i = 0; i < job.state.chunks(); i++) {
+                    if (job.state.isDone(i)) continue;
+                    long offset = (long) i * chunkSize;
+                    deque.add(new Chunk(job, i, offset, (int) Math.min(chunkSize, job.size - offset)));
+                }
+                if (job.remaining.get() == 0) job.endNanos = System.nanoTime();
+            }
+
+            AtomicReference<IOException> failure = new AtomicReference<>();
+            CountDownLatch finished = new CountDownLatch(workers);
+            for (int w = 0; w < workers; w++) {
+                int me = w;
+                executor.execute(() -> {
+                    try {
+                        work(me, deques, failure);
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
+            finished.await();
+
+            if (failure.get() != null) throw failure.get();
+            // a worker that died some other way left its chunks behind; keep the sidecar for a resume
+            for (FileJob job : jobs) {
+                int missing = job.remaining.get();
+                if (missing != 0) throw new IOException(job.name + ": " + missing + " chunks were not downloaded");
+            }
+
+            List<Result> results = new ArrayList<>();
+            for (FileJob job : jobs) {
+                job.state.complete();
+                results.add(new Result(job.name, job.size, job.fetched.get(), job.resumed, job.retries.get(),
+                        TimeUnit.NANOSECONDS.toMillis(job.endNanos - job.beginNanos)));
+            }
+            return results;
+        } finally {
+            for (FileJob job : jobs) {
+                job.channel.close();
+                job.state.close();
+            }
+        }
+    }
+
+    private FileJob prepare(String name, URI uri, Path dir) throws IOException, InterruptedException {
+        long size = size(name, uri);
+        Path path = dir.resolve(name);
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            raf.setLength(size); // preallocate so every chunk can be mapped at its offset
+        }
+        DownloadState state = DownloadState.open(dir.resolve(name + ".state"), size, chunkSize);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // resumed chunks are already on disk, so only the outstanding ones count towards progress
+        long outstandingBytes = 0;
+        for (int i = 0; i < state.chunks(); i++) {
+            if (!state.isDone(i)) outstandingBytes += Math.min(chunkSize, size - (long) i * chunkSize);
+        }
+        DownloadMetrics.FileMetrics fileMetrics =
+                metrics.register(name, outstandingBytes, state.chunks() - state.completed());
+        return new FileJob(name, uri, size, channel, state, fileMetrics);
+    }
+
+    // the size probe is a request like any chunk: it takes a slot, feeds the controller and is retried
+    private long size(String name, URI uri) throws IOException, InterruptedException {
+        for (int attempts = 1; ; attempts++) {
+            controller.acquire();
+            try {
+                long size = client.size(uri);
+                controller.onSuccess(1);
+                return size;
+            } catch (IOException e) {
+                controller.onError();
+                if (attempts >= maxAttempts) {
+                    throw new IOException("size of " + name + " failed after " + attempts + " attempts", e);
+                }
+            } finally {
+                controller.release();
+            }
+            backoff(attempts);
+        }
+    }
+
+    private void work(int me, List<ConcurrentLinkedDeque<Chunk>> deques, AtomicReference<IOException> failure) {
+        try {
+            while (failure.get() == null) {
+                controller.acquire();
+                Chunk chunk = next(me, deques);
+                if (chunk == null) {
+                    controller.release();
+                    return;
+                }
+                IOException error = null;
+                try {
+                    fetch(chunk);
+                } catch (IOException e) {
+                    error = e;
+                    controller.onError();
+                } catch (RuntimeException e) {
+                    // a malformed response or a mapping failure; retrying would not help
+                    failure.compareAndSet(null, new IOException("chunk " + chunk.index + " of " + chunk.job.name
+                            + " failed", e));
+                    return;
+                } finally {
+                    controller.release();
+                }
+                if (error == null) continue;
+
+                if (++chunk.attempts >= maxAttempts) {
+                    failure.compareAndSet(null, new IOException("chunk " + chunk.index + " of " + chunk.job.name
+                            + " failed after " + chunk.attempts + " attempts", error));
+                    return;
+                }
+                chunk.job.retries.incrementAndGet();
+                // back off without holding a slot, then retry it before anything else
+                backoff(chunk.attempts);
+                deques.get(me).addFirst(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new InterruptedIOException("download interrupted"));
+        }
+    }
+
+    // exponential backoff with full jitter after the given number of failed attempts
+    private static void backoff(int attempts) throws InterruptedException {
+        long ceiling = Math.min(BACKOFF_CAP_MS, BACKOFF_BASE_MS << (attempts - 1));
+        Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    // own deque from the head; otherwise steal from the tail of the others
+    private Chunk next(int me, List<ConcurrentLinkedDeque<Chunk>> deques) {
+        Chunk c = deques.get(me).pollFirst();
+        for (int i = 1; c == null && i < deques.size(); i++) {
+            c = deques.get((me + i) % deques.size()).pollLast();
+        }
+        return c;
+    }
+
+    private void fetch(Chunk chunk) throws IOException {
+        FileJob job = chunk.job;
+        long begin = System.nanoTime();
+        MappedByteBuffer region = job.channel.map(FileChannel.MapMode.READ_WRITE, chunk.offset, chunk.length);
+        CRC32C crc = new CRC32C();
+        long expected = client.fetch(job.uri, chunk.offset, region, crc);
+        if (expected >= 0 && expected != crc.getValue()) {
+            throw new IOException(String.format("CRC32C mismatch: expected %08x, got %08x", expected, crc.getValue()));
+        }
+        region.force();
+        job.state.markDone(chunk.index);
+        job.fetched.incrementAndGet();
+        job.metrics.chunkDone(chunk.length, System.nanoTime() - begin);
+        controller.onSuccess(chunk.length);
+        if (job.remaining.decrementAndGet() == 0) {
+            job.endNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package multithreading.download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * Local HTTP server that serves synthetic files with {@code Range} support, so the downloader
+ * can be exercised without network access. File contents are a pure function of name and
+ * offset, which lets {@link #verify} check a download without keeping a copy in memory.
+ * Each file can be throttled to simulate a slow origin, and {@link Faults} make the server
+ * flaky: failed requests, bodies cut short, corrupted bytes and a connection limit above which
+ * requests get 503. Every range response carries the CRC32C of the bytes it should contain in
+ * {@code X-Checksum-CRC32C}, computed before any corruption, so clients can detect it.
+ */
+public class StubServer implements AutoCloseable {
+
+    private static final class StubFile {
+        final long size;
+        final long bytesPerSecond;
+        final int seed;
+
+        StubFile(String name, long size, long bytesPerSecond) {
+            this.size = size;
+            this.bytesPerSecond = bytesPerSecond;
+            this.seed = name.hashCode();
+        }
+    }
+
+    /** Fault injection settings; rates are per request, in [0, 1]. */
+    public static final class Faults {
+        public static final Faults NONE = new Faults(0, 0, 0, 0);
+
+        final double errorRate;
+        final double truncateRate;
+        final double corruptRate;
+        final int maxConnections; // 0 = unlimited
+
+        public Faults(double errorRate, double truncateRate, double corruptRate, int maxConnections) {
+            this.errorRate = errorRate;
+            this.truncateRate = truncateRate;
+            this.corruptRate = corruptRate;
+            this.maxConnections = maxConnections;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "stub-http");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, StubFile> files = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder corrupted = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+    private volatile Faults faults = Faults.NONE;
+
+    public StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.createContext("/files/", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /** Serves {@code size} bytes at /files/name, at most {@code bytesPerSecond} per request (0 = unthrottled). */
+    public URI addFile(String name, long size, long bytesPerSecond) {
+        files.put(name, new StubFile(name, size, bytesPerSecond));
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/files/" + name);
+    }
+
+    public void setFaults(Faults faults) {
+        this.faults = faults;
+    }
+
+    /** Faults injected so far, e.g. {@code errors=3 truncated=1 corrupted=2 overloaded=0}. */
+    public String faultStats() {
+        return String.format("errors=%d truncated=%d corrupted=%d overloaded=%d",
+                errors.sum(), truncated.sum(), corrupted.sum(), overloaded.sum());
+    }
+
+    public static byte expectedByte(String name, long offset) {
+        long x = (offset + name.hashCode()) * 0x9E3779B97F4A7C15L;
+        return (byte) (x >>> 56);
+    }
+
+    /** True when the file at {@code path} has the exact size and content served for {@code name}. */
+    public static boolean verify(String name, long size, Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() != size) return false;
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+            long offset = 0;
+            while (ch.read(buf) > 0 || buf.position() > 0) {
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    if (buf.get() != expectedByte(name, offset++)) return false;
+                }
+                buf.clear();
+            }
+            return offset == size;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int active = connections.incrementAndGet();
+        try (exchange) {
+            Faults f = faults;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (f.maxConnections > 0 && active > f.maxConnections) {
+                overloaded.increment();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            if (random.nextDouble() < f.errorRate) {
+                errors.increment();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            String name = exchange.getRequestURI().getPath().substring("/files/".length());
+            StubFile file = files.get(name);
+            if (file == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            long from = 0;
+            long to = file.size - 1;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring("bytes=".length()).split("-", 2);
+                from = Long.parseLong(bounds[0]);
+                if (!bounds[1].isEmpty()) to = Math.min(to, Long.parseLong(bounds[1]));
+                if (from > to) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + file.size);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + file.size);
+            }
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            long length = to - from + 1;
+            byte[] buf = new byte[16 * 1024];
+            if (range != null) {
+                exchange.getResponseHeaders().set("X-Checksum-CRC32C", Long.toHexString(crc32c(name, from, length, buf)));
+            }
+            exchange.sendResponseHeaders(range != null ? 206 : 200, length);
+
+            // faults after the headers: the client has committed to reading this body
+            long stopAt = random.nextDouble() < f.truncateRate ? random.nextLong(length) : length;
+            long corruptAt = random.nextDouble() < f.corruptRate ? random.nextLong(length) : -1;
+            if (stopAt < length) truncated.increment();
+            if (corruptAt >= 0) corrupted.increment();
+
+            OutputStream out = exchange.getResponseBody();
+            long begin = System.nanoTime();
+            long sent = 0;
+            while (sent < stopAt) {
+                int n = (int) Math.min(buf.length, stopAt - sent);
+                for (int i = 0; i < n; i++) {
+                    buf[i] = expectedByte(name, from + sent + i);
+                }
+                if (corruptAt >= sent && corruptAt < sent + n) buf[(int) (corruptAt - sent)] ^= 0x5A;
+                out.write(buf, 0, n);
+                sent += n;
+                throttle(file.bytesPerSecond, sent, begin);
+            }
+            if (sent < length) {
+                out.flush();
+                throw new IOException("injected truncation"); // drops the connection without finishing the body
+            }
+        } finally {
+            connections.decrementAndGet();
+        }
+    }
+
+    private static long crc32c(String name, long from, long length, byte[] buf) {
+        CRC32C crc = new CRC32C();
+        for (long done = 0; done < length; ) {
+            int n = (int) Math.min(buf.length, length - done);
+            for (int i = 0; i < n; i++) {
+                buf[i] = expectedByte(name, from + done + i);
+            }
+            crc.update(buf, 0, n);
+            done += n;
+        }
+        return crc.getValue();
+    }
+
+    private static void throttle(long bytesPerSecond, long sent, long beginNanos) {
+        if (bytesPerSecond <= 0) return;
+        long dueNanos = sent * 1_000_000_000L / bytesPerSecond;
+        long aheadMs = (dueNanos - (System.nanoTime() - beginNanos)) / 1_000_000;
+        if (aheadMs > 0) {
+            try {
+                Thread.sleep(aheadMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+}
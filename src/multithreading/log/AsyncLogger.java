@@ -0,0 +1,316 @@
+package multithreading.log;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous line logger for hot loops, replacing {@code System.out.printf}, whose
+ * PrintStream lock serializes every thread that logs.
+ *
+ * A call formats its {@link LogTemplate} into a reusable thread-local buffer (numbers and
+ * strings are encoded in place, nothing is allocated), claims a slot of a preallocated ring
+ * with one CAS (Vyukov's MPMC sequence scheme, see {@code MpmcRingBuffer}, with a single
+ * consumer), copies the bytes in and returns. One writer thread drains the ring into a direct
+ * buffer and writes whole batches to a {@link WritableByteChannel}, so a burst of lines costs
+ * one system call rather than one each. When the ring is full the {@link Overflow} policy
+ * either drops the line (counted) or makes the caller wait for space. Lines longer than a slot
+ * are truncated.
+ */
+public final class AsyncLogger implements AutoCloseable {
+
+    public enum Overflow { DROP, BLOCK }
+
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final byte[] ELLIPSIS = "...\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static volatile AsyncLogger console;
+
+    private final String name;
+    private final WritableByteChannel out;
+    private final Overflow overflow;
+    private final int slotBytes;
+    private final int mask;
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePos = new AtomicLong();
+    private volatile long writtenPos; // lines handed to the channel, written by the writer only
+    private final ThreadLocal<byte[]> scratch;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final LongAdder dropped = new LongAdder();
+    private volatile long lines;  // written by the writer thread only
+    private volatile long writes; // written by the writer thread only
+
+    public AsyncLogger(String name, WritableByteChannel out, int capacity, int slotBytes, Overflow overflow) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.name = name;
+        this.out = out;
+        this.overflow = overflow;
+        this.slotBytes = slotBytes;
+        this.mask = size - 1;
+        this.slots = new byte[size][slotBytes];
+        this.lengths = new int[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.scratch = ThreadLocal.withInitial(() -> new byte[slotBytes]);
+        this.writer = new Thread(this::drain, name + "-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Shared logger for standard output: 4096 lines of up to 256 bytes, blocking when full
+     * ({@code -Dlog.overflow=drop} drops instead). Call {@link #flush()} before printing to
+     * System.out directly, or the two outputs may interleave out of order.
+     */
+    public static AsyncLogger console() {
+        AsyncLogger c = console;
+        if (c == null) {
+            synchronized (AsyncLogger.class) {
+                if (console == null) {
+                    Overflow policy = "drop".equals(System.getProperty("log.overflow")) ? Overflow.DROP : Overflow.BLOCK;
+                    console = new AsyncLogger("console", Channels.newChannel(new FileOutputStream(FileDescriptor.out)),
+                            4096, 256, policy);
+                }
+                c = console;
+            }
+        }
+        return c;
+    }
+
+    public boolean log(LogTemplate t) {
+        check(t, 0);
+        byte[] b = scratch.get();
+        return publish(b, 0, literal(b, 0, t.literals[0]));
+    }
+
+    public boolean log(LogTemplate t, CharSequence a) {
+        check(t, 1);
+        byte[] b = scratch.get();
+        int n = literal(b, 0, t.literals[0]);
+        n = text(b, n, a);
+        return publish(b, 0, literal(b, n, t.literals[1]));
+    }
+
+    public boolean log(LogTemplate t, long a) {
+        check(t, 1);
+        byte[] b = scratch.get();
+        int n = literal(b, 0, t.literals[0]);
+        n = number(b, n, a);
+        return publish(b, 0, literal(b, n, t.literals[1]));
+    }
+
+    public boolean log(LogTemplate t, CharSequence a, long b) {
+        check(t, 2);
+        byte[] buf = scratch.get();
+        int n = literal(buf, 0, t.literals[0]);
+        n = text(buf, n, a);
+        n = literal(buf, n, t.literals[1]);
+        n = number(buf, n, b);
+        return publish(buf, 0, literal(buf, n, t.literals[2]));
+    }
+
+    public boolean log(LogTemplate t, CharSequence a, CharSequence b) {
+        check(t, 2);
+        byte[] buf = scratch.get();
+        int n = literal(buf, 0, t.literals[0]);
+        n = text(buf, n, a);
+        n = literal(buf, n, t.literals[1]);
+        n = text(buf, n, b);
+        return publish(buf, 0, literal(buf, n, t.literals[2]));
+    }
+
+    public boolean log(LogTemplate t, CharSequence a, long b, long c) {
+        check(t, 3);
+        byte[] buf = scratch.get();
+        int n = literal(buf, 0, t.literals[0]);
+        n = text(buf, n, a);
+        n = literal(buf, n, t.literals[1]);
+        n = number(buf, n, b);
+        n = literal(buf, n, t.literals[2]);
+        n = number(buf, n, c);
+        return publish(buf, 0, literal(buf, n, t.literals[3]));
+    }
+
+    public boolean log(LogTemplate t, CharSequence a, CharSequence b, long c, long d) {
+        check(t, 4);
+        byte[] buf = scratch.get();
+        int n = literal(buf, 0, t.literals[0]);
+        n = text(buf, n, a);
+        n = literal(buf, n, t.literals[1]);
+        n = text(buf, n, b);
+        n = literal(buf, n, t.literals[2]);
+        n = number(buf, n, c);
+        n = literal(buf, n, t.literals[3]);
+        n = number(buf, n, d);
+        return publish(buf, 0, literal(buf, n, t.literals[4]));
+    }
+
+    private static void check(LogTemplate t, int args) {
+        if (t.arity != args) {
+            throw new IllegalArgumentException("template '" + t + "' takes " + t.arity + " arguments, got " + args);
+        }
+    }
+
+    // --- formatting into the thread-local buffer; each step returns the new length ---
+
+    private static int literal(byte[] b, int n, byte[] bytes) {
+        int len = Math.min(bytes.length, b.length - n);
+        System.arraycopy(bytes, 0, b, n, len);
+        return n + len;
+    }
+
+    private static int text(byte[] b, int n, CharSequence s) {
+        if (s == null) s = "null";
+        for (int i = 0; i < s.length() && n < b.length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b[n++] = (byte) c;
+            } else if (c < 0x800) {
+                if (n + 2 > b.length) break;
+                b[n++] = (byte) (0xC0 | c >> 6);
+                b[n++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                if (n + 4 > b.length) break;
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[n++] = (byte) (0xF0 | cp >> 18);
+                b[n++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                b[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                b[n++] = (byte) (0x80 | cp & 0x3F);
+            } else {
+                if (n + 3 > b.length) break;
+                b[n++] = (byte) (0xE0 | c >> 12);
+                b[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[n++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return n;
+    }
+
+    private static int number(byte[] b, int n, long v) {
+        if (v == Long.MIN_VALUE) return text(b, n, "-9223372036854775808");
+        if (v < 0) {
+            if (n < b.length) b[n++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long x = v; x >= 10; x /= 10) digits++;
+        if (n + digits > b.length) return n;
+        for (int i = n + digits - 1; i >= n; i--) {
+            b[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return n + digits;
+    }
+
+    // --- handoff ---
+
+    private boolean publish(byte[] line, int from, int length) {
+        if (closed) return false;
+        if (length == slotBytes && line[length - 1] != '\n') {
+            System.arraycopy(ELLIPSIS, 0, line, length - ELLIPSIS.length, ELLIPSIS.length); // truncated
+        }
+        for (int attempt = 0; ; attempt++) {
+            long pos = enqueuePos.get();
+            int slot = (int) pos & mask;
+            long dif = sequences.get(slot) - pos;
+            if (dif == 0) {
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    System.arraycopy(line, from, slots[slot], 0, length);
+                    lengths[slot] = length;
+                    sequences.lazySet(slot, pos + 1);
+                    return true;
+                }
+            } else if (dif < 0) {
+                // full
+                if (overflow == Overflow.DROP || closed) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.unpark(writer);
+                if (attempt < 100) Thread.onSpinWait(); else LockSupport.parkNanos(20_000);
+            }
+        }
+    }
+
+    private void drain() {
+        ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+        long pos = 0;
+        int idle = 0;
+        while (true) {
+            int slot = (int) pos & mask;
+            if (sequences.get(slot) == pos + 1) {
+                if (batch.remaining() < lengths[slot]) write(batch);
+                batch.put(slots[slot], 0, lengths[slot]);
+                sequences.lazySet(slot, pos + mask + 1);
+                pos++;
+                lines++;
+                idle = 0;
+                continue;
+            }
+            // nothing more ready: hand the batch to the channel, then wait for more
+            if (batch.position() > 0) write(batch);
+            writtenPos = pos;
+            if (closed && pos == enqueuePos.get()) return;
+            if (idle++ < 100) Thread.onSpinWait(); else LockSupport.parkNanos(this, idle < 200 ? 50_000 : 1_000_000);
+        }
+    }
+
+    private void write(ByteBuffer batch) {
+        batch.flip();
+        try {
+            while (batch.hasRemaining()) out.write(batch);
+        } catch (IOException e) {
+            // nowhere left to report it; the lines are lost but callers keep running
+        }
+        batch.clear();
+        writes++;
+    }
+
+    /** Waits until every line logged before this call has been written to the channel. */
+    public void flush() {
+        long target = enqueuePos.get();
+        while (writtenPos < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /** Lines written, lines dropped and how many lines each channel write carried on average. */
+    public String stats() {
+        long l = lines;
+        long w = writes;
+        return String.format("[%s] %d lines in %d writes (%.1f lines/write), %d dropped",
+                name, l, w, w == 0 ? 0.0 : (double) l / w, dropped.sum());
+    }
+
+    /** Writes out everything logged so far and stops the writer; later calls are dropped. */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
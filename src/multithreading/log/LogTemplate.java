@@ -0,0 +1,40 @@
+package multithreading.log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A log line pattern with {@code {}} placeholders, parsed and UTF-8 encoded once (keep it in a
+ * static final field). Formatting then only copies the literal bytes and encodes the
+ * arguments in place; no String is built per line.
+ */
+public final class LogTemplate {
+
+    final byte[][] literals; // literals.length == arity + 1; the last one ends with '\n'
+    final int arity;
+    private final String pattern;
+
+    private LogTemplate(String pattern, byte[][] literals) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.arity = literals.length - 1;
+    }
+
+    public static LogTemplate of(String pattern) {
+        List<byte[]> parts = new ArrayList<>();
+        int from = 0;
+        int at;
+        while ((at = pattern.indexOf("{}", from)) >= 0) {
+            parts.add(pattern.substring(from, at).getBytes(StandardCharsets.UTF_8));
+            from = at + 2;
+        }
+        parts.add((pattern.substring(from) + "\n").getBytes(StandardCharsets.UTF_8));
+        return new LogTemplate(pattern, parts.toArray(new byte[0][]));
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,125 @@
+package multithreading.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram in the spirit of HdrHistogram: every power of two is split into 8
+ * sub-buckets, so any recorded value is reported within 12.5% of its true value.
+ *
+ * Recording is allocation-free and lock-free (one atomic add on a fixed array), so it can sit
+ * on hot paths shared by many threads. Values are unit-less; callers pick nanos, micros or ms.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile long max;
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(indexOf(value));
+        total.increment();
+        sum.add(value);
+        long m;
+        while (value > (m = max)) {
+            if (MAX.compareAndSet(this, m, value)) break;
+        }
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /** Upper bound of the bucket holding the given percentile (0-100], or 0 when empty. */
+    public long percentile(double percentile) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(upperBoundOf(i), max);
+        }
+        return max;
+    }
+
+    /** Adds every sample of {@code other} into this histogram. */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        total.add(other.total.sum());
+        sum.add(other.sum.sum());
+        long m;
+        long otherMax = other.max;
+        while (otherMax > (m = max)) {
+            if (MAX.compareAndSet(this, m, otherMax)) break;
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max = 0;
+    }
+
+    /** One-line summary, e.g. {@code n=120 mean=3.1 p50=3 p90=5 p99=9 max=11 ms}. */
+    public String summary(String unit) {
+        return String.format("n=%d mean=%.1f p50=%d p90=%d p99=%d max=%d %s",
+                count(), mean(), percentile(50), percentile(90), percentile(99), max(), unit);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exp = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (exp - SUB_BUCKET_BITS);
+        long upper = ((long) (SUB_BUCKETS + sub) << (exp - SUB_BUCKET_BITS)) + width - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+
+    private static final VarHandle MAX;
+
+    static {
+        try {
+            MAX = MethodHandles.lookup()
+                    .findVarHandle(LatencyHistogram.class, "max", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package multithreading.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size ring of the most recent samples. Recording is one atomic increment and one array
+ * store, with no allocation, so it can run inside lock acquire/release paths. Older samples are
+ * overwritten; a reader racing with writers may see a slot from the next lap, which is fine for
+ * statistics.
+ */
+public class SampleRing {
+
+    private final long[] values;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+
+    /** {@code capacity} is rounded up to the next power of two. */
+    public SampleRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.values = new long[size];
+        this.mask = size - 1;
+    }
+
+    public void record(long value) {
+        values[(int) (cursor.getAndIncrement() & mask)] = value;
+    }
+
+    /** Samples recorded since creation, including overwritten ones. */
+    public long recorded() {
+        return cursor.get();
+    }
+
+    /** Histogram of the samples currently held (at most {@code capacity}). */
+    public LatencyHistogram toHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long n = Math.min(cursor.get(), values.length);
+        for (int i = 0; i < n; i++) {
+            histogram.record(values[i]);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,156 @@
+package multithreading.pipeline;
+
+import multithreading.ExecutionMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Builder for source -> N {@link Stage}s -> sink pipelines over {@link Flow}.
+ *
+ * <pre>
+ *   Pipeline.from("orders", orders.iterator())
+ *           .map("prep", 3, 16, Order::prep)
+ *           .mapBatch("cook", 2, 16, 4, Kitchen::cookBatch)
+ *           .to("serve", 1, 16, 8, dishes -> ...)
+ *           .start();
+ * </pre>
+ *
+ * Every stage has a bounded inbox and asks upstream only for what fits, so total buffering is
+ * the sum of the inbox capacities no matter how unevenly the stages run. Workers run on an
+ * {@link ExecutionMode} executor ({@code -Dexec.mode=virtual} works) that is shut down when the
+ * stream completes.
+ */
+public final class Pipeline<T> {
+
+    private final Source<?> source;
+    private final List<Stage<?, ?>> stages;
+    private final Flow.Publisher<T> tail;
+
+    private Pipeline(Source<?> source, List<Stage<?, ?>> stages, Flow.Publisher<T> tail) {
+        this.source = source;
+        this.stages = stages;
+        this.tail = tail;
+    }
+
+    public static <T> Pipeline<T> from(String name, Iterator<? extends T> items) {
+        Source<T> source = new Source<>(name, items);
+        return new Pipeline<>(source, new ArrayList<>(), source);
+    }
+
+    /** One item at a time. */
+    public <R> Pipeline<R> map(String name, int parallelism, int capacity, Function<? super T, ? extends R> fn) {
+        return mapBatch(name, parallelism, capacity, 1, batch -> {
+            List<R> out = new ArrayList<>(batch.size());
+            for (T item : batch) out.add(fn.apply(item));
+            return out;
+        });
+    }
+
+    /** Up to {@code batchSize} items per call; the function may return any number of results. */
+    public <R> Pipeline<R> mapBatch(String name, int parallelism, int capacity, int batchSize,
+                                    Function<List<T>, List<R>> fn) {
+        Stage<T, R> stage = new Stage<>(name, parallelism, capacity, batchSize, fn);
+        tail.subscribe(stage);
+        List<Stage<?, ?>> all = new ArrayList<>(stages);
+        all.add(stage);
+        return new Pipeline<>(source, all, stage);
+    }
+
+    /** Terminal stage; {@code sink} receives batches of up to {@code batchSize} items. */
+    public Running to(String name, int parallelism, int capacity, int batchSize, Consumer<List<T>> sink) {
+        Pipeline<Void> end = mapBatch(name, parallelism, capacity, batchSize, batch -> {
+            sink.accept(batch);
+            return Collections.emptyList();
+        });
+        return new Running(end.source, end.stages, end.tail);
+    }
+
+    /** A wired pipeline; {@link #start()} launches the source and every worker. */
+    public static final class Running {
+        private final Source<?> source;
+        private final List<Stage<?, ?>> stages;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private Flow.Subscription terminal;
+        private long startNanos;
+        private long endNanos;
+
+        private Running(Source<?> source, List<Stage<?, ?>> stages, Flow.Publisher<Void> tail) {
+            this.source = source;
+            this.stages = stages;
+            tail.subscribe(new Flow.Subscriber<Void>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    terminal = subscription;
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(Void item) {
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    endNanos = System.nanoTime();
+                    completion.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    endNanos = System.nanoTime();
+                    completion.complete(null);
+                }
+            });
+        }
+
+        public Running start() {
+            int threads = 1;
+            for (Stage<?, ?> stage : stages) threads += stage.parallelism();
+            ExecutorService executor = ExecutionMode.fromSystemProperty().newExecutor("pipeline", threads);
+            completion.whenComplete((v, e) -> executor.shutdown());
+            startNanos = System.nanoTime();
+            for (Stage<?, ?> stage : stages) stage.start(executor);
+            source.start(executor);
+            return this;
+        }
+
+        /** Completes when the sink has seen the end of the stream (or a stage failed). */
+        public CompletableFuture<Void> completion() {
+            return completion;
+        }
+
+        /** Stops the stream: cancellation travels upstream stage by stage to the source. */
+        public void cancel() {
+            terminal.cancel();
+            completion.cancel(false);
+        }
+
+        /** Per-stage throughput and where worker time went: busy, starved (no input) or blocked (no demand). */
+        public String report() {
+            long wall = (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+            StringBuilder sb = new StringBuilder(String.format("[pipeline] %s emitted %d in %dms (%.0f items/s)%n",
+                    source.name(), source.emitted.sum(), TimeUnit.NANOSECONDS.toMillis(wall),
+                    source.emitted.sum() / (wall / 1e9)));
+            sb.append(String.format("[pipeline] %-8s %3s %8s %8s %9s %9s %6s %8s %8s",
+                    "stage", "par", "in", "out", "avg batch", "max inbox", "busy", "starved", "blocked"));
+            for (Stage<?, ?> s : stages) {
+                double workerNanos = (double) wall * s.parallelism();
+                long batches = s.batches.sum();
+                sb.append(String.format("%n[pipeline] %-8s %3d %8d %8d %9.1f %5d/%-3d %5.0f%% %7.0f%% %7.0f%%",
+                        s.name(), s.parallelism(), s.itemsIn.sum(), s.itemsOut.sum(),
+                        batches == 0 ? 0.0 : (double) s.itemsIn.sum() / batches, s.maxDepth(), s.capacity(),
+                        100 * s.busyNanos.sum() / workerNanos, 100 * s.starvedNanos.sum() / workerNanos,
+                        100 * s.blockedNanos.sum() / workerNanos));
+            }
+            return sb.toString();
+        }
+    }
+}
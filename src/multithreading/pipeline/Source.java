@@ -0,0 +1,88 @@
+package multithreading.pipeline;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publisher that pulls from an iterator on its own task and emits only against demand: one
+ * credit per requested item, so a slow first stage throttles the source instead of letting
+ * items pile up. Exhausting the iterator completes the stream.
+ */
+public final class Source<T> implements Flow.Publisher<T> {
+
+    private final String name;
+    private final Iterator<? extends T> items;
+    private final Semaphore credit = new Semaphore(0);
+    private volatile Flow.Subscriber<? super T> subscriber;
+    private volatile boolean cancelled;
+
+    final LongAdder emitted = new LongAdder();
+    final LongAdder blockedNanos = new LongAdder();
+
+    public Source(String name, Iterator<? extends T> items) {
+        this.name = name;
+        this.items = items;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> s) {
+        if (subscriber != null) {
+            s.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            s.onError(new IllegalStateException(name + " supports a single subscriber"));
+            return;
+        }
+        subscriber = s;
+        s.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n > 0) credit.release((int) Math.min(n, Integer.MAX_VALUE - credit.availablePermits()));
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+        });
+    }
+
+    void start(Executor executor) {
+        executor.execute(this::run);
+    }
+
+    private void run() {
+        Flow.Subscriber<? super T> s = subscriber;
+        try {
+            while (!cancelled && items.hasNext()) {
+                long wait = System.nanoTime();
+                while (!credit.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    if (cancelled) return;
+                }
+                blockedNanos.add(System.nanoTime() - wait);
+                if (cancelled) return;
+                s.onNext(items.next());
+                emitted.increment();
+            }
+            if (!cancelled) s.onComplete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            s.onError(e);
+        }
+    }
+}
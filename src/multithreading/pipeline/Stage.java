@@ -0,0 +1,214 @@
+package multithreading.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * One pipeline stage: a {@link Flow.Processor} with a bounded inbox and {@code parallelism}
+ * workers that take up to {@code batchSize} items at a time and apply {@code fn} to the batch.
+ *
+ * Demand flows upstream in exact proportion to free inbox space: the stage requests
+ * {@code capacity} items when subscribed and then re-requests one item for every item a worker
+ * removes, so the inbox can never overflow however fast the producer is. Downstream demand is
+ * a semaphore of credits; a worker with results but no credit waits, which stops it taking more
+ * input, which stops upstream requests - backpressure reaches the source without any buffer
+ * growing. End of stream is a single marker object that each worker puts back before leaving;
+ * the last worker out completes (or fails) the downstream subscriber. Output order is only
+ * preserved with parallelism 1.
+ */
+public final class Stage<I, O> implements Flow.Processor<I, O> {
+
+    private static final Object END = new Object();
+
+    private final String name;
+    private final int parallelism;
+    private final int batchSize;
+    private final int capacity;
+    private final Function<List<I>, List<O>> fn;
+
+    // capacity + 1: room for the end marker even when the inbox is full of items
+    private final BlockingQueue<Object> inbox;
+    private final Semaphore credit = new Semaphore(0);
+    private final Object emitLock = new Object();
+    private final AtomicInteger running;
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super O> downstream;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    final LongAdder itemsIn = new LongAdder();
+    final LongAdder itemsOut = new LongAdder();
+    final LongAdder batches = new LongAdder();
+    final LongAdder starvedNanos = new LongAdder();   // workers waiting for input
+    final LongAdder blockedNanos = new LongAdder();   // workers waiting for downstream demand
+    final LongAdder busyNanos = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    public Stage(String name, int parallelism, int capacity, int batchSize, Function<List<I>, List<O>> fn) {
+        if (parallelism < 1 || capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException(name + ": parallelism, capacity and batchSize must be >= 1");
+        }
+        this.name = name;
+        this.parallelism = parallelism;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.fn = fn;
+        this.inbox = new ArrayBlockingQueue<>(capacity + 1);
+        this.running = new AtomicInteger(parallelism);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    int parallelism() {
+        return parallelism;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int maxDepth() {
+        return maxDepth.get();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.upstream = subscription;
+        subscription.request(capacity);
+    }
+
+    @Override
+    public void onNext(I item) {
+        // we never request more than the free space, so offer() failing means a broken publisher
+        if (!inbox.offer(item)) {
+            onError(new IllegalStateException(name + ": upstream sent more than it was asked for"));
+            return;
+        }
+        itemsIn.increment();
+        maxDepth.accumulateAndGet(inbox.size(), Math::max);
+    }
+
+    @Override
+    public void onComplete() {
+        inbox.offer(END);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        inbox.clear();
+        inbox.offer(END);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super O> subscriber) {
+        this.downstream = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException(name + ": request(" + n + ")"));
+                    return;
+                }
+                credit.release((int) Math.min(n, Integer.MAX_VALUE - credit.availablePermits()));
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Flow.Subscription up = upstream;
+                if (up != null) up.cancel();
+                inbox.clear();
+                inbox.offer(END);
+                credit.release(parallelism); // wake workers blocked on demand so they can leave
+            }
+        });
+    }
+
+    /** Starts the workers; call once both upstream and downstream are connected. */
+    void start(Executor executor) {
+        for (int i = 0; i < parallelism; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void work() {
+        List<I> batch = new ArrayList<>(batchSize);
+        try {
+            boolean end = false;
+            while (!end && !cancelled && error == null) {
+                batch.clear();
+                long idle = System.nanoTime();
+                Object first = inbox.take();
+                starvedNanos.add(System.nanoTime() - idle);
+                if (first == END) break;
+                batch.add((I) first);
+
+                // drain more without blocking, stopping at the end marker if it is in there
+                while (batch.size() < batchSize) {
+                    Object next = inbox.poll();
+                    if (next == null) break;
+                    if (next == END) {
+                        end = true;
+                        break;
+                    }
+                    batch.add((I) next);
+                }
+                upstream.request(batch.size()); // the inbox has that much room again
+
+                long begin = System.nanoTime();
+                List<O> results = fn.apply(batch);
+                busyNanos.add(System.nanoTime() - begin);
+                batches.increment();
+                emit(results);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            inbox.offer(END); // pass the marker on to the next worker
+            if (running.decrementAndGet() == 0 && !cancelled) {
+                if (error != null) downstream.onError(error);
+                else downstream.onComplete();
+            }
+        }
+    }
+
+    private void emit(List<O> results) throws InterruptedException {
+        for (O result : results) {
+            long wait = System.nanoTime();
+            while (!credit.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (cancelled) return;
+            }
+            blockedNanos.add(System.nanoTime() - wait);
+            if (cancelled) return;
+            // Flow requires onNext signals to be serial, even with several workers
+            synchronized (emitLock) {
+                downstream.onNext(result);
+            }
+            itemsOut.increment();
+        }
+    }
+
+    private void fail(Throwable t) {
+        if (error == null) error = t;
+        Flow.Subscription up = upstream;
+        if (up != null) up.cancel();
+        inbox.clear();
+        inbox.offer(END);
+    }
+}
@@ -0,0 +1,224 @@
+package multithreading.pool;
+
+import multithreading.metrics.LatencyHistogram;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ThreadPoolExecutor that sizes itself from what it observes instead of hand-tuned numbers.
+ *
+ * Every task is timed twice: how long it waited in the queue and how long it ran. Once per
+ * period a controller compares the mean queue wait against a target and moves the core size
+ * between {@code minThreads} and {@code maxThreads}: it grows towards the Little's-law estimate
+ * (completions/s x mean service time) when tasks wait too long and gives threads back when the
+ * queue stays empty and threads sit idle. {@code maxThreads} is a fixed hard ceiling by design:
+ * the controller never moves the core size past it, and between the core size and the ceiling
+ * ThreadPoolExecutor's own rule still adds threads while the queue is full, which absorbs bursts
+ * faster than the next resize period would. Queue depth, wait/run histograms, overload and
+ * rejection counts, shed tasks and active threads are exposed through {@link #stats()}.
+ */
+public class AdaptiveThreadPoolExecutor extends ThreadPoolExecutor {
+
+    // Wrapper that carries timestamps from execute() to beforeExecute()/afterExecute()
+    static final class TimedTask implements Runnable {
+        final Runnable task;
+        final long enqueuedNanos = System.nanoTime();
+        long startedNanos;
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    private final String name;
+    private final int minThreads;
+    private final int maxThreads;
+    private final long targetWaitNanos;
+    private final long resizePeriodNanos;
+
+    private final LatencyHistogram queueWaitMicros = new LatencyHistogram();
+    private final LatencyHistogram runMicros = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    // per-period sums read and reset by the controller
+    private final LongAdder windowWaitNanos = new LongAdder();
+    private final LongAdder windowRunNanos = new LongAdder();
+    private final LongAdder windowTasks = new LongAdder();
+
+    private final ScheduledExecutorService controller;
+
+    public AdaptiveThreadPoolExecutor(String name, int minThreads, int maxThreads, int queueCapacity,
+                                      long targetWaitMs, long resizePeriodMs, RejectedExecutionHandler overload) {
+        super(minThreads, maxThreads, 10, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory(name), new CountingHandler(overload));
+        ((CountingHandler) getRejectedExecutionHandler()).pool = this;
+        this.name = name;
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMs);
+        this.resizePeriodNanos = TimeUnit.MILLISECONDS.toNanos(resizePeriodMs);
+
+        controller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-controller");
+            t.setDaemon(true);
+            return t;
+        });
+        controller.scheduleAtFixedRate(this::resize, resizePeriodMs, resizePeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(command instanceof TimedTask ? command : new TimedTask(command));
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        if (r instanceof TimedTask) {
+            TimedTask timed = (TimedTask) r;
+            timed.startedNanos = System.nanoTime();
+            long wait = timed.startedNanos - timed.enqueuedNanos;
+            queueWaitMicros.record(wait / 1_000);
+            windowWaitNanos.add(wait);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        if (r instanceof TimedTask) {
+            long run = System.nanoTime() - ((TimedTask) r).startedNanos;
+            runMicros.record(run / 1_000);
+            windowRunNanos.add(run);
+            windowTasks.increment();
+        }
+        completed.increment();
+    }
+
+    @Override
+    protected void terminated() {
+        controller.shutdownNow();
+    }
+
+    void recordShed() {
+        shed.increment();
+    }
+
+    private void resize() {
+        long tasks = windowTasks.sumThenReset();
+        long waitNanos = windowWaitNanos.sumThenReset();
+        long runNanos = windowRunNanos.sumThenReset();
+        int core = getCorePoolSize();
+        int queued = getQueue().size();
+
+        if (tasks == 0) {
+            // nothing finished: either idle (shrink) or everything is stuck behind long tasks (grow)
+            if (queued > 0) setCore(core + 1);
+            else if (getActiveCount() < core) setCore(core - 1);
+            return;
+        }
+
+        long meanWait = waitNanos / tasks;
+        long meanRun = runNanos / tasks;
+        if (meanWait > targetWaitNanos && queued > 0) {
+            // Little's law: threads needed ~= arrival rate x service time; arrivals >= completions
+            // plus what piled up in the queue during this window
+            double busyThreads = (double) runNanos / resizePeriodNanos;
+            int estimate = (int) Math.ceil(busyThreads * (tasks + queued) / tasks);
+            setCore(Math.max(core + 1, Math.min(estimate, core * 2)));
+        } else if (meanWait < targetWaitNanos / 4 && getActiveCount() < core / 2 && meanRun > 0) {
+            setCore(core - 1);
+        }
+    }
+
+    private void setCore(int size) {
+        int clamped = Math.max(minThreads, Math.min(maxThreads, size));
+        if (clamped != getCorePoolSize()) {
+            setCorePoolSize(clamped);
+            if (clamped > getPoolSize()) prestartAllCoreThreads();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(this);
+    }
+
+    public static final class Stats {
+        public final String name;
+        public final int coreThreads;
+        public final int poolThreads;
+        public final int activeThreads;
+        public final int largestPool;
+        public final int queueDepth;
+        public final long completed;
+        public final long overloaded;
+        public final long rejected;
+        public final long shed;
+        public final String queueWait;
+        public final String run;
+
+        Stats(AdaptiveThreadPoolExecutor p) {
+            this.name = p.name;
+            this.coreThreads = p.getCorePoolSize();
+            this.poolThreads = p.getPoolSize();
+            this.activeThreads = p.getActiveCount();
+            this.largestPool = p.getLargestPoolSize();
+            this.queueDepth = p.getQueue().size();
+            this.completed = p.completed.sum();
+            this.overloaded = p.overloaded.sum();
+            this.rejected = p.rejected.sum();
+            this.shed = p.shed.sum();
+            this.queueWait = p.queueWaitMicros.summary("us");
+            this.run = p.runMicros.summary("us");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s] core=%d pool=%d active=%d largest=%d queued=%d completed=%d overloaded=%d rejected=%d shed=%d%n"
+                            + "[%s]   queue wait: %s%n[%s]   run:        %s",
+                    name, coreThreads, poolThreads, activeThreads, largestPool, queueDepth, completed, overloaded, rejected, shed,
+                    name, queueWait, name, run);
+        }
+    }
+
+    // Counts rejections before delegating to the configured overload policy
+    private static final class CountingHandler implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler delegate;
+        AdaptiveThreadPoolExecutor pool;
+
+        CountingHandler(RejectedExecutionHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            pool.overloaded.increment();
+            try {
+                delegate.rejectedExecution(r, executor);
+            } catch (RejectedExecutionException e) {
+                pool.rejected.increment();
+                throw e;
+            }
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> new Thread(r, name + "-" + seq.incrementAndGet());
+    }
+}
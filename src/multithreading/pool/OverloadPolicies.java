@@ -0,0 +1,66 @@
+package multithreading.pool;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alternatives to {@link ThreadPoolExecutor.CallerRunsPolicy}, which under a burst turns the
+ * submitting thread into a worker and stalls all further intake until that task finishes.
+ */
+public final class OverloadPolicies {
+
+    /**
+     * Waits up to {@code timeout} for queue space, then rejects. The submitter slows down
+     * (back-pressure) but is never stuck for longer than the bound, and never runs the task.
+     */
+    public static RejectedExecutionHandler boundedWait(long timeout, TimeUnit unit) {
+        return (r, executor) -> {
+            if (executor.isShutdown()) throw new RejectedExecutionException("executor is shut down");
+            try {
+                if (!executor.getQueue().offer(r, timeout, unit)) {
+                    throw new RejectedExecutionException("queue still full after " + unit.toMillis(timeout) + "ms");
+                }
+                recheckShutdown(r, executor);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("interrupted while waiting for queue space", e);
+            }
+        };
+    }
+
+    /**
+     * Drops the oldest queued task to make room for the new one; the dropped task's Future (if
+     * any) is cancelled so its caller does not wait forever. Right for work where only the
+     * newest request matters (refreshes, polling, telemetry).
+     */
+    public static RejectedExecutionHandler shedOldest() {
+        return (r, executor) -> {
+            if (executor.isShutdown()) throw new RejectedExecutionException("executor is shut down");
+            while (!executor.getQueue().offer(r)) {
+                Runnable oldest = executor.getQueue().poll();
+                Runnable task = oldest instanceof AdaptiveThreadPoolExecutor.TimedTask
+                        ? ((AdaptiveThreadPoolExecutor.TimedTask) oldest).task : oldest;
+                if (task instanceof Future) ((Future<?>) task).cancel(false);
+                if (executor instanceof AdaptiveThreadPoolExecutor) {
+                    ((AdaptiveThreadPoolExecutor) executor).recordShed();
+                }
+            }
+            recheckShutdown(r, executor);
+        };
+    }
+
+    // The handlers put tasks into the queue behind execute()'s back; like execute() itself, take
+    // the task back out and reject it if the pool shut down meanwhile, or it may never run. If
+    // remove fails, a worker has already taken it.
+    private static void recheckShutdown(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown() && executor.remove(r)) {
+            throw new RejectedExecutionException("executor was shut down while the task was being queued");
+        }
+    }
+
+    private OverloadPolicies() {
+    }
+}
@@ -0,0 +1,264 @@
+package multithreading.pool;
+
+import multithreading.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size executor that runs the most urgent task first instead of the oldest.
+ *
+ * Every task has a {@link Priority} and optionally a deadline. Tasks are ranked by a single
+ * absolute time: {@code deadline + class offset}, where the offset is {@code agingMs} per class
+ * below URGENT and a task without a deadline counts as due when it was submitted. Within a class
+ * that is earliest-deadline-first; across classes URGENT wins by up to {@code agingMs} per class.
+ * Because ranks are points in time and newer work ranks later, a waiting BULK task is overtaken
+ * only by work due less than {@code 2 x agingMs} after it: it ages into the front of the queue
+ * without anything ever being re-sorted. A task whose deadline has passed by the time a worker
+ * reaches it is dropped (its Future is cancelled) rather than run late.
+ *
+ * The queue is a {@link ConcurrentSkipListSet} (lock-free inserts and polls, no single lock like
+ * PriorityBlockingQueue) and idle workers park on a semaphore holding one permit per queued task.
+ * Queue wait, submit-to-done latency, expired drops and late completions are reported per class
+ * by {@link #stats()}.
+ */
+public class PriorityDeadlineExecutor extends AbstractExecutorService {
+
+    public enum Priority { URGENT, NORMAL, BULK }
+
+    public static final long NO_DEADLINE = -1;
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private static final class Task {
+        final Runnable body;
+        final Priority priority;
+        final long submittedNanos = System.nanoTime();
+        final boolean timed;
+        final long deadlineNanos;
+        final long rank;
+        final long seq;
+
+        Task(Runnable body, Priority priority, long deadlineMs, long agingNanos, long seq) {
+            this.body = body;
+            this.priority = priority;
+            this.timed = deadlineMs != NO_DEADLINE;
+            this.deadlineNanos = timed ? submittedNanos + TimeUnit.MILLISECONDS.toNanos(deadlineMs) : submittedNanos;
+            this.rank = deadlineNanos + priority.ordinal() * agingNanos;
+            this.seq = seq;
+        }
+    }
+
+    private static final class ClassStats {
+        final LatencyHistogram waitMicros = new LatencyHistogram();
+        final LatencyHistogram latencyMicros = new LatencyHistogram();
+        final LongAdder submitted = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder expired = new LongAdder();
+        final LongAdder late = new LongAdder();
+    }
+
+    private final String name;
+    private final long agingNanos;
+    private final ConcurrentSkipListSet<Task> queue = new ConcurrentSkipListSet<>(
+            Comparator.<Task>comparingLong(t -> t.rank).thenComparingLong(t -> t.seq));
+    private final Semaphore queued = new Semaphore(0);
+    private final AtomicLong seq = new AtomicLong();
+    private final Map<Priority, ClassStats> stats = new EnumMap<>(Priority.class);
+    private final List<Thread> workers = new ArrayList<>();
+    private final CountDownLatch terminated;
+    private volatile boolean shutdown;
+
+    public PriorityDeadlineExecutor(String name, int threads, long agingMs) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        this.name = name;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMs);
+        this.terminated = new CountDownLatch(threads);
+        for (Priority p : PRIORITIES) {
+            stats.put(p, new ClassStats());
+        }
+        for (int i = 1; i <= threads; i++) {
+            Thread t = new Thread(this::work, name + "-" + i);
+            workers.add(t);
+            t.start();
+        }
+    }
+
+    /** Runs {@code task} as NORMAL work without a deadline. */
+    @Override
+    public void execute(Runnable task) {
+        execute(Priority.NORMAL, NO_DEADLINE, task);
+    }
+
+    /** {@code deadlineMs} is relative to now; the task is dropped if no worker reaches it in time. */
+    public void execute(Priority priority, long deadlineMs, Runnable task) {
+        enqueue(new Task(task, priority, deadlineMs, agingNanos, seq.getAndIncrement()));
+    }
+
+    /** The returned Future is cancelled if the task expires before it starts. */
+    public <T> Future<T> submit(Priority priority, long deadlineMs, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        execute(priority, deadlineMs, future);
+        return future;
+    }
+
+    public Future<?> submit(Priority priority, long deadlineMs, Runnable task) {
+        FutureTask<Void> future = new FutureTask<>(task, null);
+        execute(priority, deadlineMs, future);
+        return future;
+    }
+
+    private void enqueue(Task task) {
+        if (shutdown) throw new RejectedExecutionException(name + " is shut down");
+        queue.add(task);
+        // a shutdown() racing with this add may already have let the workers drain and exit;
+        // take the task back and reject it. If it is gone, a worker took it and will run it.
+        if (shutdown && queue.remove(task)) throw new RejectedExecutionException(name + " is shut down");
+        stats.get(task.priority).submitted.increment();
+        queued.release();
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                queued.acquire();
+                Task task = queue.pollFirst();
+                // shutdown() hands out one extra permit per worker: an empty poll means drained
+                if (task == null) return;
+                run(task);
+            }
+        } catch (InterruptedException e) {
+            // shutdownNow()
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    private void run(Task task) {
+        ClassStats s = stats.get(task.priority);
+        long started = System.nanoTime();
+        if (task.timed && started - task.deadlineNanos > 0) {
+            s.expired.increment();
+            if (task.body instanceof Future) ((Future<?>) task.body).cancel(false);
+            return;
+        }
+        s.waitMicros.record((started - task.submittedNanos) / 1_000);
+        try {
+            task.body.run();
+        } catch (RuntimeException e) {
+            // the task's own failure; a FutureTask would have kept it for its caller instead
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+        } finally {
+            long done = System.nanoTime();
+            s.latencyMicros.record((done - task.submittedNanos) / 1_000);
+            s.completed.increment();
+            if (task.timed && done - task.deadlineNanos > 0) s.late.increment();
+        }
+    }
+
+    /** Already queued tasks still run; new ones are rejected. */
+    @Override
+    public void shutdown() {
+        if (shutdown) return;
+        shutdown = true;
+        queued.release(workers.size());
+    }
+
+    /** Interrupts the workers and returns the queued tasks, most urgent first. */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>();
+        Task task;
+        while ((task = queue.pollFirst()) != null) {
+            pending.add(task.body);
+        }
+        for (Thread t : workers) {
+            t.interrupt();
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public Stats stats() {
+        return new Stats(this);
+    }
+
+    public static final class Stats {
+        public final String name;
+        public final int queueDepth;
+        public final Map<Priority, ClassSummary> classes = new EnumMap<>(Priority.class);
+
+        Stats(PriorityDeadlineExecutor e) {
+            this.name = e.name;
+            this.queueDepth = e.queue.size();
+            for (Priority p : PRIORITIES) {
+                classes.put(p, new ClassSummary(e.stats.get(p)));
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("[%s] queued=%d", name, queueDepth));
+            classes.forEach((p, c) -> sb.append(String.format("%n[%s]   %-6s %s", name, p, c)));
+            return sb.toString();
+        }
+    }
+
+    public static final class ClassSummary {
+        public final long submitted;
+        public final long completed;
+        public final long expired;
+        public final long late;
+        public final LatencyHistogram latencyMicros;
+        public final String queueWait;
+
+        ClassSummary(ClassStats s) {
+            this.submitted = s.submitted.sum();
+            this.completed = s.completed.sum();
+            this.expired = s.expired.sum();
+            this.late = s.late.sum();
+            this.latencyMicros = s.latencyMicros;
+            this.queueWait = s.waitMicros.summary("us");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("submitted=%d completed=%d expired=%d late=%d latency p50=%dus p99=%dus; queue wait: %s",
+                    submitted, completed, expired, late, latencyMicros.percentile(50), latencyMicros.percentile(99), queueWait);
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package multithreading.reetrantlock;
 
-import java.util.concurrent.locks.ReentrantLock;
-
 public class FairLockDemo {
-    private static final ReentrantLock lock = new ReentrantLock(true); // ⚖️ fair mode
+    private static final ProfiledLock lock = new ProfiledLock("fair-lock", true); // ⚖️ fair mode
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         Runnable task = () -> {
             String name = Thread.currentThread().getName();
             for (int i = 0; i < 2; i++) {
@@ -21,8 +19,14 @@ public class FairLockDemo {
             }
         };
 
+        Thread[] workers = new Thread[3];
         for (int i = 1; i <= 3; i++) {
-            new Thread(task, "Worker-" + i).start();
+            workers[i - 1] = new Thread(task, "Worker-" + i);
+            workers[i - 1].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
         }
+        System.out.println(lock.report());
     }
 }
@@ -0,0 +1,271 @@
+package multithreading.reetrantlock;
+
+import multithreading.metrics.SampleRing;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ReentrantLock that records how it is used: wait time before each acquire, hold time until
+ * the matching outermost unlock, queue length seen on arrival, tryLock timeouts, and the
+ * owner's stack whenever one hold lasts longer than {@code longHoldMillis}.
+ *
+ * Samples go into fixed {@link SampleRing}s (the last {@code window} acquisitions), so the hot
+ * path does not allocate; {@link #report()} turns them into histograms. A waiter blocks in the
+ * underlying lock exactly once, so a fair lock keeps its FIFO order. Long holds are caught by a
+ * shared watchdog thread that looks at every lock twice per {@code longHoldMillis} and takes the
+ * owner's stack while the long hold is still going on.
+ */
+public class ProfiledLock extends ReentrantLock {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_LONG_HOLDS = 4;
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lock-profiler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // holds its lock weakly, so an unused lock can still be collected; then it cancels itself
+    private static final class Sampler implements Runnable {
+        private final WeakReference<ProfiledLock> lock;
+        volatile ScheduledFuture<?> self;
+
+        Sampler(ProfiledLock lock) {
+            this.lock = new WeakReference<>(lock);
+        }
+
+        @Override
+        public void run() {
+            ProfiledLock l = lock.get();
+            if (l != null) l.sample();
+            else if (self != null) self.cancel(false);
+        }
+    }
+
+    private final String name;
+    private final long longHoldNanos;
+
+    private final SampleRing waitMicros;
+    private final SampleRing holdMicros;
+    private final SampleRing queueLength;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    // last few owner stacks seen during long holds; rare, so a plain array under its own monitor
+    private final LongHold[] longHolds = new LongHold[MAX_LONG_HOLDS];
+    private final AtomicLong longHoldCount = new AtomicLong();
+
+    // written only by the owner between acquire and release; acquiredAt before holdSeq, so a
+    // watchdog that reads holdSeq first sees the acquiredAt of that hold (or a later one)
+    private volatile long acquiredAt;
+    private volatile long holdSeq;
+    // watchdog thread only: the hold whose stack was already taken
+    private long capturedSeq;
+
+    public ProfiledLock(String name) {
+        this(name, false, 100, 4096);
+    }
+
+    public ProfiledLock(String name, boolean fair) {
+        this(name, fair, 100, 4096);
+    }
+
+    public ProfiledLock(String name, boolean fair, long longHoldMillis, int window) {
+        super(fair);
+        this.name = name;
+        this.longHoldNanos = TimeUnit.MILLISECONDS.toNanos(longHoldMillis);
+        this.waitMicros = new SampleRing(window);
+        this.holdMicros = new SampleRing(window);
+        this.queueLength = new SampleRing(window);
+        Sampler sampler = new Sampler(this);
+        long periodMillis = Math.max(1, longHoldMillis / 2);
+        sampler.self = WATCHDOG.scheduleAtFixedRate(sampler, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void lock() {
+        long start = System.nanoTime();
+        int queued = getQueueLength();
+        // lock() is not interruptible: keep a pending interrupt out of the way, restore it after
+        boolean interrupted = Thread.interrupted();
+        if (!tryNow()) {
+            contended.increment();
+            super.lock();
+        }
+        acquired(start, queued);
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        long start = System.nanoTime();
+        int queued = getQueueLength();
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (!tryNow()) {
+            contended.increment();
+            super.lockInterruptibly();
+        }
+        acquired(start, queued);
+    }
+
+    @Override
+    public boolean tryLock() {
+        int queued = getQueueLength();
+        if (!super.tryLock()) {
+            contended.increment(); // refused, not timed out: it never waited
+            return false;
+        }
+        acquired(System.nanoTime(), queued);
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        int queued = getQueueLength();
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (!tryNow()) {
+            contended.increment();
+            if (!super.tryLock(timeout, unit)) {
+                timeouts.increment();
+                return false;
+            }
+        }
+        acquired(start, queued);
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        if (isHeldByCurrentThread() && getHoldCount() == 1) {
+            holdMicros.record((System.nanoTime() - acquiredAt) / 1_000);
+        }
+        super.unlock();
+    }
+
+    // tryLock(0) instead of tryLock(): it respects fair ordering and, unlike a timed wait, never
+    // joins the queue; the caller has cleared the interrupt flag, so it cannot throw
+    private boolean tryNow() {
+        try {
+            return super.tryLock(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void acquired(long start, int queued) {
+        if (getHoldCount() > 1) return; // reentrant acquire: neither a wait nor a new hold
+        long now = System.nanoTime();
+        acquiredAt = now;
+        holdSeq++; // only the owner writes it
+        acquisitions.increment();
+        waitMicros.record((now - start) / 1_000);
+        queueLength.record(queued);
+    }
+
+    // Watchdog thread: a hold past longHoldNanos gets its owner's stack taken once, while the
+    // owner is still inside the critical section
+    private void sample() {
+        Thread owner = getOwner();
+        if (owner == null) return;
+        long seq = holdSeq;
+        long heldNanos = System.nanoTime() - acquiredAt;
+        if (seq == capturedSeq || heldNanos < longHoldNanos) return;
+        StackTraceElement[] stack = owner.getStackTrace();
+        if (holdSeq != seq || getOwner() != owner) return; // released meanwhile: not this hold's stack
+        capturedSeq = seq;
+        LongHold hold = new LongHold(owner.getName(), TimeUnit.NANOSECONDS.toMillis(heldNanos), getQueueLength(), stack);
+        long slot = longHoldCount.getAndIncrement();
+        synchronized (longHolds) {
+            longHolds[(int) (slot % MAX_LONG_HOLDS)] = hold;
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Report report() {
+        return new Report(this);
+    }
+
+    /** Owner stack captured during a hold longer than the long-hold threshold. */
+    public static final class LongHold {
+        public final String owner;
+        public final long heldMs;
+        public final int waiters;
+        public final StackTraceElement[] stack;
+
+        LongHold(String owner, long heldMs, int waiters, StackTraceElement[] stack) {
+            this.owner = owner;
+            this.heldMs = heldMs;
+            this.waiters = waiters;
+            this.stack = stack;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%s had held it for %dms, %d waiting", owner, heldMs, waiters));
+            for (int i = 0; i < Math.min(stack.length, 3); i++) {
+                sb.append("\n        at ").append(stack[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Histograms over the last {@code window} acquisitions plus lifetime counters. */
+    public static final class Report {
+        public final String name;
+        public final boolean fair;
+        public final long acquisitions;
+        public final long contended;
+        public final long timeouts;
+        public final long longHoldCount;
+        public final String wait;
+        public final String hold;
+        public final String queue;
+        public final List<LongHold> longHolds = new ArrayList<>();
+
+        Report(ProfiledLock lock) {
+            this.name = lock.name;
+            this.fair = lock.isFair();
+            this.acquisitions = lock.acquisitions.sum();
+            this.contended = lock.contended.sum();
+            this.timeouts = lock.timeouts.sum();
+            this.longHoldCount = lock.longHoldCount.get();
+            this.wait = lock.waitMicros.toHistogram().summary("us");
+            this.hold = lock.holdMicros.toHistogram().summary("us");
+            this.queue = lock.queueLength.toHistogram().summary("waiters");
+            synchronized (lock.longHolds) {
+                for (LongHold h : lock.longHolds) {
+                    if (h != null) longHolds.add(h);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(
+                    "[%s] %s acquisitions=%d contended=%d timeouts=%d longHolds=%d%n"
+                            + "[%s]   wait:  %s%n[%s]   hold:  %s%n[%s]   queue: %s",
+                    name, fair ? "fair" : "non-fair", acquisitions, contended, timeouts, longHoldCount,
+                    name, wait, name, hold, name, queue));
+            for (LongHold h : longHolds) {
+                sb.append(String.format("%n[%s]   long hold: %s", name, h));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -1,22 +1,42 @@
 package multithreading.reetrantlock;
 
-import java.util.concurrent.locks.ReentrantLock;
+import multithreading.log.AsyncLogger;
+import multithreading.log.LogTemplate;
+import multithreading.state.LongCounter;
 
+/**
+ * Usage: ReentrantLockDemo [lock|striped|optimistic|accumulator]
+ *
+ * lock (default) keeps the counter behind one global lock held across the simulated work;
+ * the other modes update a {@link LongCounter} without any lock and do the work unlocked.
+ */
 public class ReentrantLockDemo {
-    private static final ReentrantLock lock = new ReentrantLock();
+    private static final ProfiledLock lock = new ProfiledLock("counter-lock");
     private static int sharedCounter = 0;
 
-    public static void main(String[] args) {
+    // logged without taking the System.out lock, so the lock hold times below measure the
+    // critical section rather than console output
+    private static final LogTemplate ACQUIRED = LogTemplate.of("{} acquired lock, old={}");
+    private static final LogTemplate RELEASING = LogTemplate.of("{} releasing lock, new={}");
+    private static final LogTemplate INCREMENTED = LogTemplate.of("{} incremented, now={}");
+    private static final AsyncLogger log = AsyncLogger.console();
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0 && !args[0].equals("lock")) {
+            runLockFree(LongCounter.create(args[0]));
+            return;
+        }
+
         Runnable task = () -> {
             String name = Thread.currentThread().getName();
             for (int i = 0; i < 3; i++) {
                 lock.lock();   // 🔒 acquire lock
                 try {
                     int oldValue = sharedCounter;
-                    System.out.printf("%s acquired lock, old=%d%n", name, oldValue);
+                    log.log(ACQUIRED, name, oldValue);
                     sharedCounter = oldValue + 1;
                     Thread.sleep(200);  // simulate work
-                    System.out.printf("%s releasing lock, new=%d%n", name, sharedCounter);
+                    log.log(RELEASING, name, sharedCounter);
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                 } finally {
@@ -32,5 +52,37 @@ public class ReentrantLockDemo {
         t1.start();
         t2.start();
         t3.start();
+
+        t1.join();
+        t2.join();
+        t3.join();
+        log.flush();
+        System.out.println(lock.report());
+    }
+
+    private static void runLockFree(LongCounter counter) throws InterruptedException {
+        Runnable task = () -> {
+            String name = Thread.currentThread().getName();
+            for (int i = 0; i < 3; i++) {
+                counter.increment();
+                log.log(INCREMENTED, name, counter.get());
+                try {
+                    Thread.sleep(200);  // simulate work, no longer inside a critical section
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        Thread[] workers = new Thread[3];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(task, "Worker-" + (i + 1));
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        log.flush();
+        System.out.println("Final counter: " + counter.get() + " (" + counter.getClass().getSimpleName() + ")");
     }
 }
@@ -1,13 +1,12 @@
 package multithreading.reetrantlock;
 
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class TryLockDemo {
 
 
-    private final static ReentrantLock lock = new ReentrantLock();
-    public static void main(String[] args) {
+    private final static ProfiledLock lock = new ProfiledLock("try-lock");
+    public static void main(String[] args) throws InterruptedException {
 
         Runnable task = ()-> {
 
@@ -37,5 +36,9 @@ public class TryLockDemo {
 
         t1.start();
         t2.start();
+
+        t1.join();
+        t2.join();
+        System.out.println(lock.report());
     }
 }
@@ -0,0 +1,66 @@
+package multithreading.state;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Lock-free accumulator over padded CAS cells. {@code accumulate(x)} folds x into the caller's
+ * home cell with a compare-and-set; if the CAS loses it moves on to the next cell instead of
+ * retrying on the contended one. The operation must be associative and commutative (sum, max,
+ * min, or) because {@link #get()} combines the cells in arbitrary order.
+ */
+public class LockFreeAccumulator implements LongCounter {
+
+    private final LongBinaryOperator function;
+    private final long identity;
+    private final int stripes;
+    private final AtomicLongArray cells;
+
+    public LockFreeAccumulator(LongBinaryOperator function, long identity) {
+        this.function = function;
+        this.identity = identity;
+        this.stripes = Stripes.count();
+        this.cells = new AtomicLongArray(stripes * Stripes.STRIDE);
+        reset();
+    }
+
+    public static LockFreeAccumulator sum() {
+        return new LockFreeAccumulator(Long::sum, 0);
+    }
+
+    public static LockFreeAccumulator max() {
+        return new LockFreeAccumulator(Math::max, Long.MIN_VALUE);
+    }
+
+    public void accumulate(long x) {
+        int stripe = Stripes.home(stripes);
+        while (true) {
+            int index = stripe * Stripes.STRIDE;
+            long current = cells.get(index);
+            long next = function.applyAsLong(current, x);
+            if (current == next || cells.compareAndSet(index, current, next)) return;
+            stripe = (stripe + 1) & (stripes - 1);
+        }
+    }
+
+    @Override
+    public void add(long delta) {
+        accumulate(delta);
+    }
+
+    @Override
+    public long get() {
+        long result = identity;
+        for (int i = 0; i < stripes; i++) {
+            result = function.applyAsLong(result, cells.get(i * Stripes.STRIDE));
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * Stripes.STRIDE, identity);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package multithreading.state;
+
+/**
+ * A shared long that many threads update. The implementations trade read cost against write
+ * scalability differently:
+ *
+ * <ul>
+ *   <li>{@link StripedCounter}: one padded cell per stripe, writes never contend on one line,
+ *       reads sum every stripe; best for write-heavy counters.</li>
+ *   <li>{@link OptimisticLong}: a single value behind a StampedLock; reads are a validated
+ *       optimistic load with no writes to shared memory; best for read-mostly state.</li>
+ *   <li>{@link LockFreeAccumulator}: striped CAS cells for any associative, commutative
+ *       operation (sum, max, min), not just addition.</li>
+ * </ul>
+ */
+public interface LongCounter {
+
+    void add(long delta);
+
+    default void increment() {
+        add(1);
+    }
+
+    long get();
+
+    void reset();
+
+    /** {@code striped}, {@code optimistic} or {@code accumulator}. */
+    static LongCounter create(String kind) {
+        switch (kind) {
+            case "striped":
+                return new StripedCounter();
+            case "optimistic":
+                return new OptimisticLong();
+            case "accumulator":
+                return LockFreeAccumulator.sum();
+            default:
+                throw new IllegalArgumentException("unknown counter kind: " + kind
+                        + " (expected striped, optimistic or accumulator)");
+        }
+    }
+}
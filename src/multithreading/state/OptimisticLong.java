@@ -0,0 +1,70 @@
+package multithreading.state;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A long guarded by a StampedLock. Readers take an optimistic stamp, read, and validate; they
+ * only fall back to a read lock if a writer got in between, so a read-mostly value costs
+ * readers no shared-memory writes at all. Writers are serialized like a plain lock.
+ */
+public class OptimisticLong implements LongCounter {
+
+    private final StampedLock lock = new StampedLock();
+    private long value;
+
+    public OptimisticLong() {
+    }
+
+    public OptimisticLong(long initial) {
+        this.value = initial;
+    }
+
+    @Override
+    public long get() {
+        long stamp = lock.tryOptimisticRead();
+        long v = value;
+        if (lock.validate(stamp)) return v;
+        stamp = lock.readLock();
+        try {
+            return value;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void add(long delta) {
+        update(v -> v + delta);
+    }
+
+    public void set(long newValue) {
+        update(v -> newValue);
+    }
+
+    /** Applies {@code fn} under the write lock and returns the previous value. */
+    public long getAndUpdate(LongUnaryOperator fn) {
+        long stamp = lock.writeLock();
+        try {
+            long previous = value;
+            value = fn.applyAsLong(previous);
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long update(LongUnaryOperator fn) {
+        long stamp = lock.writeLock();
+        try {
+            return value = fn.applyAsLong(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void reset() {
+        set(0);
+    }
+}
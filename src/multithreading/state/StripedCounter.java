@@ -0,0 +1,50 @@
+package multithreading.state;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sum counter split into cache-line-padded stripes. Each thread adds to its home stripe with
+ * a single atomic add (no retry loop), so writers on different stripes never touch the same
+ * cache line; {@link #get()} sums the stripes and is only a moment-in-time estimate while
+ * writers are running.
+ */
+public class StripedCounter implements LongCounter {
+
+    private final int stripes;
+    private final AtomicLongArray cells;
+
+    public StripedCounter() {
+        this(Stripes.count());
+    }
+
+    /** {@code stripes} is rounded up to a power of two. */
+    public StripedCounter(int stripes) {
+        this.stripes = Integer.highestOneBit(Math.max(1, stripes * 2 - 1));
+        this.cells = new AtomicLongArray(this.stripes * Stripes.STRIDE);
+    }
+
+    @Override
+    public void add(long delta) {
+        cells.getAndAdd(Stripes.home(stripes) * Stripes.STRIDE, delta);
+    }
+
+    @Override
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * Stripes.STRIDE);
+        }
+        return sum;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * Stripes.STRIDE, 0);
+        }
+    }
+
+    public int stripes() {
+        return stripes;
+    }
+}
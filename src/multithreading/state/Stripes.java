@@ -0,0 +1,21 @@
+package multithreading.state;
+
+// Stripe sizing and thread-to-stripe mapping shared by the striped implementations
+final class Stripes {
+
+    // 16 longs = 128 bytes between cells: a full cache line plus the adjacent line some CPUs prefetch
+    static final int STRIDE = 16;
+
+    static int count() {
+        return Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+    }
+
+    // threads get a fixed home stripe; ids are sequential, so mix them to spread neighbours
+    static int home(int stripes) {
+        long x = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (x ^ (x >>> 32)) & (stripes - 1);
+    }
+
+    private Stripes() {
+    }
+}